@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.Executor;
+
+import org.jclouds.openstack.swift.v1.TemporaryUrlSigner.TemporaryUrlKeyFromAccount;
+import org.jclouds.openstack.swift.v1.features.AccountApi;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Supplies the account's temporary url key, reloading it in the background
+ * once it is older than the refresh interval. Only the very first call waits
+ * for the account HEAD; after that, callers always get the last known key
+ * immediately, and a failed reload keeps serving it until the next reload
+ * succeeds.
+ */
+public class RefreshAheadTemporaryUrlKey implements Supplier<String> {
+
+   public static RefreshAheadTemporaryUrlKey create(AccountApi api, long seconds, Executor executor) {
+      return new RefreshAheadTemporaryUrlKey(new TemporaryUrlKeyFromAccount(api), seconds, executor,
+            Ticker.systemTicker());
+   }
+
+   private final Supplier<String> delegate;
+   private final LoadingCache<String, Optional<String>> key;
+
+   RefreshAheadTemporaryUrlKey(final Supplier<String> delegate, long seconds, Executor executor, Ticker ticker) {
+      this.delegate = checkNotNull(delegate, "delegate");
+      checkArgument(seconds > 0, "seconds must be positive, but was %s", seconds);
+      checkNotNull(executor, "executor");
+      this.key = CacheBuilder.newBuilder().refreshAfterWrite(seconds, SECONDS).ticker(ticker).recordStats()
+            .build(CacheLoader.asyncReloading(new CacheLoader<String, Optional<String>>() {
+               @Override
+               public Optional<String> load(String account) {
+                  return Optional.fromNullable(delegate.get());
+               }
+            }, executor));
+   }
+
+   @Override
+   public String get() {
+      return key.getUnchecked("").orNull();
+   }
+
+   /**
+    * Load counts and latencies of the key. {@link CacheStats#loadCount()} is
+    * the amount of account HEADs, {@link CacheStats#loadExceptionCount()} the
+    * failed ones, and {@link CacheStats#averageLoadPenalty()} their mean
+    * latency in nanoseconds.
+    */
+   public CacheStats stats() {
+      return key.stats();
+   }
+
+   @Override
+   public String toString() {
+      return format("refreshAhead(%s)", delegate);
+   }
+}
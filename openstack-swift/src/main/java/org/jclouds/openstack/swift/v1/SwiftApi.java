@@ -28,6 +28,7 @@ import org.jclouds.location.functions.RegionToEndpoint;
 import org.jclouds.openstack.swift.v1.features.AccountApi;
 import org.jclouds.openstack.swift.v1.features.BulkApi;
 import org.jclouds.openstack.swift.v1.features.ContainerApi;
+import org.jclouds.openstack.swift.v1.features.DynamicLargeObjectApi;
 import org.jclouds.openstack.swift.v1.features.ObjectApi;
 import org.jclouds.openstack.swift.v1.features.StaticLargeObjectApi;
 import org.jclouds.rest.annotations.Delegate;
@@ -62,6 +63,12 @@ public interface SwiftApi extends Closeable {
    ObjectApi objectApiInRegionForContainer(@EndpointParam(parser = RegionToEndpoint.class) @Nullable String region,
          @PathParam("containerName") String containerName);
 
+   @Delegate
+   @Path("/{containerName}")
+   DynamicLargeObjectApi dynamicLargeObjectApiInRegionForContainer(
+         @EndpointParam(parser = RegionToEndpoint.class) @Nullable String region,
+         @PathParam("containerName") String containerName);
+
    @Delegate
    @Path("/{containerName}")
    StaticLargeObjectApi staticLargeObjectApiInRegionForContainer(
@@ -18,6 +18,20 @@ package org.jclouds.openstack.swift.v1;
 
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.CREDENTIAL_TYPE;
 import static org.jclouds.openstack.keystone.v2_0.config.KeystoneProperties.SERVICE_TYPE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.ASYNC_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.AUTO_SEGMENT_THRESHOLD;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.BULK_DELETE_BATCH_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.BULK_DELETE_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CONTAINER_CACHE_SPEC;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.COORDINATOR_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.DETAILED_LIST_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MAX_MANIFEST_SEGMENTS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MULTIPART_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MULTIPART_SEGMENT_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_CHUNK_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_DEPTH;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.REGION_PROBE_INTERVAL;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.REGION_PROBE_TIMEOUT;
 import static org.jclouds.reflect.Reflection2.typeToken;
 
 import java.net.URI;
@@ -63,6 +77,20 @@ public class SwiftApiMetadata extends BaseHttpApiMetadata<SwiftApi> {
       Properties properties = BaseHttpApiMetadata.defaultProperties();
       properties.setProperty(SERVICE_TYPE, ServiceType.OBJECT_STORE);
       properties.setProperty(CREDENTIAL_TYPE, CredentialTypes.PASSWORD_CREDENTIALS);
+      properties.setProperty(MULTIPART_SEGMENT_SIZE, Long.toString(32l * 1024 * 1024));
+      properties.setProperty(MULTIPART_PARALLELISM, "4");
+      properties.setProperty(AUTO_SEGMENT_THRESHOLD, Long.toString(5l * 1024 * 1024 * 1024));
+      properties.setProperty(MAX_MANIFEST_SEGMENTS, "1000");
+      properties.setProperty(BULK_DELETE_BATCH_SIZE, "10000");
+      properties.setProperty(BULK_DELETE_PARALLELISM, "4");
+      properties.setProperty(CONTAINER_CACHE_SPEC, "maximumSize=1000,expireAfterWrite=60s,recordStats");
+      properties.setProperty(DETAILED_LIST_PARALLELISM, "16");
+      properties.setProperty(READ_AHEAD_CHUNK_SIZE, Integer.toString(8 * 1024 * 1024));
+      properties.setProperty(READ_AHEAD_DEPTH, "0");
+      properties.setProperty(ASYNC_PARALLELISM, "64");
+      properties.setProperty(REGION_PROBE_INTERVAL, "0");
+      properties.setProperty(REGION_PROBE_TIMEOUT, "2000");
+      properties.setProperty(COORDINATOR_THREADS, "0");
       return properties;
    }
 
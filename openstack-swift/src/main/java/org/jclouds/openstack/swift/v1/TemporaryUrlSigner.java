@@ -26,12 +26,16 @@ import static com.google.common.io.BaseEncoding.base16;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.util.List;
+
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.jclouds.openstack.swift.v1.features.AccountApi;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
 
 /**
  * Use this utility to create temporary urls.
@@ -47,7 +51,18 @@ public class TemporaryUrlSigner {
       return new TemporaryUrlSigner(keySupplier);
    }
 
+   /**
+    * Signs with whatever key {@code keySupplier} currently returns, such as a
+    * {@link RefreshAheadTemporaryUrlKey}.
+    */
+   public static TemporaryUrlSigner usingKey(Supplier<String> keySupplier) {
+      return new TemporaryUrlSigner(checkNotNull(keySupplier, "keySupplier"));
+   }
+
+   private static final BaseEncoding HEX = base16().lowerCase();
+
    private final Supplier<String> keySupplier;
+   private final ThreadLocal<KeyedMac> macs = new ThreadLocal<KeyedMac>();
 
    TemporaryUrlSigner(Supplier<String> keySupplier) {
       this.keySupplier = keySupplier;
@@ -57,26 +72,71 @@ public class TemporaryUrlSigner {
       checkNotNull(method, "method");
       checkNotNull(path, "path");
       checkArgument(expirationTimestampSeconds > 0, "expirationTimestamp must be a unix epoch timestamp");
-      String hmacBody = format("%s\n%s\n%s", method, expirationTimestampSeconds, path);
-      return base16().lowerCase().encode(hmacSHA1(hmacBody));
+      return sign(mac(), method, path, expirationTimestampSeconds);
+   }
+
+   /**
+    * Signs each of {@code paths} with the same method and expiration, looking
+    * up the key only once for the whole batch.
+    *
+    * @return signatures in the same order as {@code paths}
+    */
+   public List<String> signAll(String method, Iterable<String> paths, long expirationTimestampSeconds) {
+      checkNotNull(method, "method");
+      checkNotNull(paths, "paths");
+      checkArgument(expirationTimestampSeconds > 0, "expirationTimestamp must be a unix epoch timestamp");
+      Mac mac = mac();
+      ImmutableList.Builder<String> signatures = ImmutableList.builder();
+      for (String path : paths) {
+         signatures.add(sign(mac, method, checkNotNull(path, "path"), expirationTimestampSeconds));
+      }
+      return signatures.build();
+   }
+
+   private static String sign(Mac mac, String method, String path, long expirationTimestampSeconds) {
+      String hmacBody = new StringBuilder(method.length() + path.length() + 22).append(method).append('\n')
+            .append(expirationTimestampSeconds).append('\n').append(path).toString();
+      return HEX.encode(mac.doFinal(hmacBody.getBytes(UTF_8)));
    }
 
    byte[] hmacSHA1(String data) {
-      try {
-         String key = keySupplier.get();
-         checkState(key != null, "%s returned a null temporaryUrlKey!", keySupplier);
-         Mac mac = Mac.getInstance("HmacSHA1");
-         mac.init(new SecretKeySpec(key.getBytes(UTF_8), "HmacSHA1"));
-         return mac.doFinal(data.getBytes(UTF_8));
-      } catch (Exception e) {
-         throw propagate(e);
+      return mac().doFinal(data.getBytes(UTF_8));
+   }
+
+   /**
+    * Returns this thread's MAC, initializing a new one only when the key
+    * changed since it was last used.
+    */
+   private Mac mac() {
+      String key = keySupplier.get();
+      checkState(key != null, "%s returned a null temporaryUrlKey!", keySupplier);
+      KeyedMac cached = macs.get();
+      if (cached == null || !cached.key.equals(key)) {
+         cached = new KeyedMac(key);
+         macs.set(cached);
+      }
+      return cached.mac;
+   }
+
+   private static final class KeyedMac {
+      private final String key;
+      private final Mac mac;
+
+      private KeyedMac(String key) {
+         this.key = key;
+         try {
+            this.mac = Mac.getInstance("HmacSHA1");
+            this.mac.init(new SecretKeySpec(key.getBytes(UTF_8), "HmacSHA1"));
+         } catch (Exception e) {
+            throw propagate(e);
+         }
       }
    }
 
    static class TemporaryUrlKeyFromAccount implements Supplier<String> {
       private final AccountApi api;
 
-      private TemporaryUrlKeyFromAccount(AccountApi api) {
+      TemporaryUrlKeyFromAccount(AccountApi api) {
          this.api = checkNotNull(api, "accountApi");
       }
 
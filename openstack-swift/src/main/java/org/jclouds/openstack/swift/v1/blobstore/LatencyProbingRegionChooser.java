@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+/**
+ * Supplies the configured region that answered an account HEAD the fastest,
+ * on a moving average over successive probes. The regions are probed in
+ * parallel on {@code executor}; those whose last probe failed or did not
+ * answer within {@code timeoutMillis} are skipped, and {@code fallback} is
+ * used when no probe succeeded in time.
+ *
+ * Like {@link org.jclouds.openstack.swift.v1.RefreshAheadTemporaryUrlKey},
+ * only the first call waits for the probes; later ones get the last choice
+ * immediately while the regions are probed again in the background once the
+ * interval has elapsed.
+ */
+public class LatencyProbingRegionChooser implements Supplier<String> {
+
+   public static LatencyProbingRegionChooser create(final SwiftApi api, Supplier<Set<String>> regionIds,
+         Supplier<String> fallback, long seconds, long timeoutMillis, Executor executor) {
+      return new LatencyProbingRegionChooser(new Function<String, Object>() {
+         @Override
+         public Object apply(String regionId) {
+            return api.accountApiInRegion(regionId).get();
+         }
+
+         @Override
+         public String toString() {
+            return "accountApiInRegion(regionId).get()";
+         }
+      }, regionIds, fallback, seconds, timeoutMillis, executor, Ticker.systemTicker());
+   }
+
+   /** weight of previous probes when averaging latency, out of 8 */
+   private static final int LATENCY_DECAY = 7;
+
+   private final Function<String, ?> probe;
+   private final Supplier<Set<String>> regionIds;
+   private final Supplier<String> fallback;
+   private final long timeoutMillis;
+   private final Executor executor;
+   private final Ticker ticker;
+   private final ConcurrentMap<String, Long> latencies = Maps.newConcurrentMap();
+   private final LoadingCache<String, String> fastest;
+
+   LatencyProbingRegionChooser(Function<String, ?> probe, Supplier<Set<String>> regionIds,
+         Supplier<String> fallback, long seconds, long timeoutMillis, Executor executor, Ticker ticker) {
+      this.probe = checkNotNull(probe, "probe");
+      this.regionIds = checkNotNull(regionIds, "regionIds");
+      this.fallback = checkNotNull(fallback, "fallback");
+      this.ticker = checkNotNull(ticker, "ticker");
+      checkArgument(seconds > 0, "seconds must be positive, but was %s", seconds);
+      checkArgument(timeoutMillis > 0, "timeoutMillis must be positive, but was %s", timeoutMillis);
+      this.timeoutMillis = timeoutMillis;
+      this.executor = checkNotNull(executor, "executor");
+      this.fastest = CacheBuilder.newBuilder().refreshAfterWrite(seconds, SECONDS).ticker(ticker)
+            .build(CacheLoader.asyncReloading(new CacheLoader<String, String>() {
+               @Override
+               public String load(String ignored) {
+                  return probeAll();
+               }
+            }, executor));
+   }
+
+   @Override
+   public String get() {
+      return fastest.getUnchecked("");
+   }
+
+   /**
+    * @return average probe latency in nanoseconds of each region whose last
+    *         probe succeeded
+    */
+   public Map<String, Long> latencies() {
+      return ImmutableMap.copyOf(latencies);
+   }
+
+   private String probeAll() {
+      Map<String, ListenableFutureTask<Long>> probes = Maps.newLinkedHashMap();
+      for (String regionId : regionIds.get()) {
+         ListenableFutureTask<Long> task = ListenableFutureTask.create(new Probe(regionId));
+         probes.put(regionId, task);
+         executor.execute(task);
+      }
+      long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+      String choice = null;
+      long best = Long.MAX_VALUE;
+      for (Map.Entry<String, ListenableFutureTask<Long>> entry : probes.entrySet()) {
+         String regionId = entry.getKey();
+         long nanos;
+         try {
+            nanos = entry.getValue().get(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+         } catch (ExecutionException e) {
+            latencies.remove(regionId);
+            continue;
+         } catch (TimeoutException e) {
+            entry.getValue().cancel(true);
+            latencies.remove(regionId);
+            continue;
+         }
+         long average = recordLatency(regionId, nanos);
+         if (average < best) {
+            best = average;
+            choice = regionId;
+         }
+      }
+      return choice != null ? choice : fallback.get();
+   }
+
+   /**
+    * @return nanoseconds one region took to answer
+    */
+   private class Probe implements Callable<Long> {
+      private final String regionId;
+
+      private Probe(String regionId) {
+         this.regionId = regionId;
+      }
+
+      @Override
+      public Long call() {
+         long start = ticker.read();
+         probe.apply(regionId);
+         return ticker.read() - start;
+      }
+   }
+
+   private long recordLatency(String regionId, long nanos) {
+      Long previous = latencies.get(regionId);
+      long average = previous == null ? nanos : (previous * LATENCY_DECAY + nanos) / (LATENCY_DECAY + 1);
+      latencies.put(regionId, average);
+      return average;
+   }
+
+   @Override
+   public String toString() {
+      return format("fastestRegion(%s)", probe);
+   }
+}
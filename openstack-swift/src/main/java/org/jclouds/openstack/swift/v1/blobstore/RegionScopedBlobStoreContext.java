@@ -18,9 +18,13 @@ package org.jclouds.openstack.swift.v1.blobstore;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.jclouds.Constants.PROPERTY_USER_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.ASYNC_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.COORDINATOR_THREADS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.REGION_PROBE_INTERVAL;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.REGION_PROBE_TIMEOUT;
 
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -33,10 +37,15 @@ import org.jclouds.blobstore.attr.ConsistencyModel;
 import org.jclouds.internal.BaseView;
 import org.jclouds.location.Provider;
 import org.jclouds.location.Region;
+import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.rest.Utils;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.ListeningExecutorService;
 
@@ -97,8 +106,52 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
    @Deprecated
    public org.jclouds.blobstore.AsyncBlobStore asyncBlobStoreInRegion(String regionId) {
       checkRegionId(regionId);
-      return new org.jclouds.openstack.swift.v1.blobstore.internal.SubmissionAsyncBlobStore(
-            blobStoreInRegion(regionId), executor);
+      return asyncBlobStore.getUnchecked(regionId);
+   }
+
+   /**
+    * Creates an asynchronous blobstore that runs at most {@code parallelism}
+    * requests at once on {@code executor}, queueing the rest without holding
+    * a thread.
+    * 
+    * @param regionId
+    *           valid region id from {@link #configuredRegions()}
+    * @param executor
+    *           runs the blocking requests, for example one that starts a
+    *           lightweight thread per task where the runtime offers them. It
+    *           must not be the user executor: multipart uploads and bulk
+    *           deletes wait there for segments and batches of their own, which
+    *           could find every thread taken by the operations waiting.
+    * @throws IllegalArgumentException
+    *            if {@code regionId} was invalid.
+    */
+   public RegionScopedSwiftAsyncBlobStore asyncBlobStoreInRegion(String regionId, Executor executor,
+         int parallelism) {
+      checkRegionId(regionId);
+      return new RegionScopedSwiftAsyncBlobStore(blobStoreInRegion(regionId), executor, parallelism);
+   }
+
+   /**
+    * Creates a blobstore that writes to each of {@code regionIds} in parallel
+    * and reads from whichever of them answers fastest.
+    * 
+    * @param regionIds
+    *           valid region ids from {@link #configuredRegions()}, in the order
+    *           reads should try them until latencies are known
+    * @param writeQuorum
+    *           regions that must accept a write before it returns
+    * @param readTimeoutMillis
+    *           how long a read waits for one region before trying the next
+    * @throws IllegalArgumentException
+    *            if a region id was invalid or the quorum is out of range.
+    */
+   public ReplicatedSwiftBlobStore replicatedBlobStore(Iterable<String> regionIds, int writeQuorum,
+         long readTimeoutMillis) {
+      ImmutableMap.Builder<String, BlobStore> regions = ImmutableMap.builder();
+      for (String regionId : regionIds) {
+         regions.put(regionId, blobStoreInRegion(regionId));
+      }
+      return new ReplicatedSwiftBlobStore(regions.build(), coordinator, writeQuorum, readTimeoutMillis);
    }
 
    protected void checkRegionId(String regionId) {
@@ -113,20 +166,33 @@ public class RegionScopedBlobStoreContext extends BaseView implements BlobStoreC
    private final Function<String, BlobStore> blobStore;
    private final Function<String, BlobRequestSigner> blobRequestSigner;
    private final Utils utils;
-   private final ListeningExecutorService executor;
+   private final ListeningExecutorService coordinator;
+   private final LoadingCache<String, RegionScopedSwiftAsyncBlobStore> asyncBlobStore;
 
    @Inject
    public RegionScopedBlobStoreContext(@Provider Context backend, @Provider TypeToken<? extends Context> backendType,
          @Region Supplier<Set<String>> regionIds, @Region Supplier<String> implicitRegionId,
          Function<String, BlobStore> blobStore, Function<String, BlobRequestSigner> blobRequestSigner, Utils utils,
-         @Named(PROPERTY_USER_THREADS) ListeningExecutorService executor) {
+         @Named(COORDINATOR_THREADS) final ListeningExecutorService coordinator,
+         @Named(ASYNC_PARALLELISM) final int asyncParallelism, SwiftApi api,
+         @Named(REGION_PROBE_INTERVAL) long regionProbeInterval,
+         @Named(REGION_PROBE_TIMEOUT) long regionProbeTimeout) {
       super(backend, backendType);
       this.regionIds = checkNotNull(regionIds, "regionIds");
-      this.implicitRegionId = checkNotNull(implicitRegionId, "implicitRegionId");
+      checkNotNull(implicitRegionId, "implicitRegionId");
+      this.implicitRegionId = regionProbeInterval > 0 ? LatencyProbingRegionChooser.create(api, regionIds,
+            implicitRegionId, regionProbeInterval, regionProbeTimeout, coordinator) : implicitRegionId;
       this.blobStore = checkNotNull(blobStore, "blobStore");
       this.blobRequestSigner = checkNotNull(blobRequestSigner, "blobRequestSigner");
       this.utils = checkNotNull(utils, "utils");
-      this.executor = checkNotNull(executor, "executor");
+      this.coordinator = checkNotNull(coordinator, "coordinator");
+      // one per region, so that the parallelism limit holds across calls
+      this.asyncBlobStore = CacheBuilder.newBuilder().build(
+            new CacheLoader<String, RegionScopedSwiftAsyncBlobStore>() {
+               public RegionScopedSwiftAsyncBlobStore load(String regionId) {
+                  return asyncBlobStoreInRegion(regionId, coordinator, asyncParallelism);
+               }
+            });
    }
 
    @Override
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.jclouds.blobstore.AsyncBlobStore;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
+import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.domain.Location;
+import org.jclouds.openstack.swift.v1.blobstore.internal.QueueingSubmitter;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * {@link AsyncBlobStore} over a regional Swift {@link BlobStore} that keeps at
+ * most {@code parallelism} requests running at once. Operations over that
+ * limit wait in a queue instead of on a thread, and operations made of several
+ * requests, such as detailed listings, chain them with callbacks rather than
+ * blocking a thread until they finish.
+ *
+ * Each instance has its own limit, so share one per region rather than
+ * creating one per call.
+ */
+public class RegionScopedSwiftAsyncBlobStore implements AsyncBlobStore {
+
+   private final BlobStore delegate;
+   private final QueueingSubmitter submitter;
+
+   /**
+    * @param executor
+    *           runs the blocking requests; any executor works, including one
+    *           that starts a new lightweight thread per task on runtimes that
+    *           offer them, except the one {@code delegate} submits segment
+    *           uploads and bulk deletes to, as those calls block until their
+    *           own tasks on it finish.
+    */
+   public RegionScopedSwiftAsyncBlobStore(BlobStore delegate, Executor executor, int parallelism) {
+      this.delegate = checkNotNull(delegate, "delegate");
+      this.submitter = new QueueingSubmitter(executor, parallelism);
+   }
+
+   /**
+    * @return operations waiting for one of the {@code parallelism} slots
+    */
+   public int queued() {
+      return submitter.queued();
+   }
+
+   /**
+    * @return requests currently running
+    */
+   public int running() {
+      return submitter.running();
+   }
+
+   @Override
+   public BlobStoreContext getContext() {
+      return delegate.getContext();
+   }
+
+   @Override
+   public BlobBuilder blobBuilder(String name) {
+      return delegate.blobBuilder(name);
+   }
+
+   @Override
+   public ListenableFuture<Set<? extends Location>> listAssignableLocations() {
+      return submitter.submit(new Callable<Set<? extends Location>>() {
+         public Set<? extends Location> call() {
+            return delegate.listAssignableLocations();
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<PageSet<? extends StorageMetadata>> list() {
+      return submitter.submit(new Callable<PageSet<? extends StorageMetadata>>() {
+         public PageSet<? extends StorageMetadata> call() {
+            return delegate.list();
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Boolean> containerExists(final String container) {
+      return submitter.submit(new Callable<Boolean>() {
+         public Boolean call() {
+            return delegate.containerExists(container);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Boolean> createContainerInLocation(final Location location, final String container) {
+      return submitter.submit(new Callable<Boolean>() {
+         public Boolean call() {
+            return delegate.createContainerInLocation(location, container);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Boolean> createContainerInLocation(final Location location, final String container,
+         final CreateContainerOptions options) {
+      return submitter.submit(new Callable<Boolean>() {
+         public Boolean call() {
+            return delegate.createContainerInLocation(location, container, options);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<PageSet<? extends StorageMetadata>> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   /**
+    * Detailed listings list the container first, then queue one HEAD per blob.
+    * No thread waits for the HEADs; the page completes when the last does.
+    */
+   @Override
+   public ListenableFuture<PageSet<? extends StorageMetadata>> list(final String container,
+         final ListContainerOptions options) {
+      final ListContainerOptions listOptions = options.isDetailed() ? withoutDetails(options) : options;
+      ListenableFuture<PageSet<? extends StorageMetadata>> listing = submitter.submit(
+            new Callable<PageSet<? extends StorageMetadata>>() {
+               public PageSet<? extends StorageMetadata> call() {
+                  return delegate.list(container, listOptions);
+               }
+            });
+      if (!options.isDetailed()) {
+         return listing;
+      }
+      return Futures.transform(listing,
+            new AsyncFunction<PageSet<? extends StorageMetadata>, PageSet<? extends StorageMetadata>>() {
+               @Override
+               public ListenableFuture<PageSet<? extends StorageMetadata>> apply(
+                     PageSet<? extends StorageMetadata> page) {
+                  return fetchBlobMetadata(container, page);
+               }
+            });
+   }
+
+   private ListenableFuture<PageSet<? extends StorageMetadata>> fetchBlobMetadata(final String container,
+         final PageSet<? extends StorageMetadata> page) {
+      List<ListenableFuture<StorageMetadata>> futures = Lists.newArrayListWithCapacity(page.size());
+      for (final StorageMetadata input : page) {
+         if (input.getType() != StorageType.BLOB) {
+            futures.add(Futures.immediateFuture(input));
+            continue;
+         }
+         futures.add(submitter.submit(new Callable<StorageMetadata>() {
+            public StorageMetadata call() {
+               return delegate.blobMetadata(container, input.getName());
+            }
+         }));
+      }
+      return Futures.transform(Futures.allAsList(futures),
+            new Function<List<StorageMetadata>, PageSet<? extends StorageMetadata>>() {
+               @Override
+               public PageSet<? extends StorageMetadata> apply(List<StorageMetadata> detailed) {
+                  // blobs removed since the listing are left out
+                  return new PageSetImpl<StorageMetadata>(ImmutableList.copyOf(Iterables.filter(detailed,
+                        Predicates.notNull())), page.getNextMarker());
+               }
+            });
+   }
+
+   private static ListContainerOptions withoutDetails(ListContainerOptions options) {
+      ListContainerOptions copy = new ListContainerOptions();
+      if (options.getDir() != null) {
+         copy.inDirectory(options.getDir());
+      }
+      if (options.getMarker() != null) {
+         copy.afterMarker(options.getMarker());
+      }
+      if (options.getMaxResults() != null) {
+         copy.maxResults(options.getMaxResults());
+      }
+      if (options.isRecursive()) {
+         copy.recursive();
+      }
+      return copy;
+   }
+
+   @Override
+   public ListenableFuture<Void> clearContainer(final String container) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.clearContainer(container);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Void> clearContainer(final String container, final ListContainerOptions options) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.clearContainer(container, options);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Void> deleteContainer(final String container) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.deleteContainer(container);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Boolean> directoryExists(final String container, final String directory) {
+      return submitter.submit(new Callable<Boolean>() {
+         public Boolean call() {
+            return delegate.directoryExists(container, directory);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Void> createDirectory(final String container, final String directory) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.createDirectory(container, directory);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Void> deleteDirectory(final String container, final String directory) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.deleteDirectory(container, directory);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Boolean> blobExists(final String container, final String name) {
+      return submitter.submit(new Callable<Boolean>() {
+         public Boolean call() {
+            return delegate.blobExists(container, name);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<String> putBlob(final String container, final Blob blob) {
+      return submitter.submit(new Callable<String>() {
+         public String call() {
+            return delegate.putBlob(container, blob);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<String> putBlob(final String container, final Blob blob, final PutOptions options) {
+      return submitter.submit(new Callable<String>() {
+         public String call() {
+            return delegate.putBlob(container, blob, options);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<BlobMetadata> blobMetadata(final String container, final String name) {
+      return submitter.submit(new Callable<BlobMetadata>() {
+         public BlobMetadata call() {
+            return delegate.blobMetadata(container, name);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Blob> getBlob(String container, String name) {
+      return getBlob(container, name, GetOptions.NONE);
+   }
+
+   @Override
+   public ListenableFuture<Blob> getBlob(final String container, final String name, final GetOptions options) {
+      return submitter.submit(new Callable<Blob>() {
+         public Blob call() {
+            return delegate.getBlob(container, name, options);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Void> removeBlob(final String container, final String name) {
+      return submitter.submit(new Callable<Void>() {
+         public Void call() {
+            delegate.removeBlob(container, name);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Long> countBlobs(final String container) {
+      return submitter.submit(new Callable<Long>() {
+         public Long call() {
+            return delegate.countBlobs(container);
+         }
+      });
+   }
+
+   @Override
+   public ListenableFuture<Long> countBlobs(final String container, final ListContainerOptions options) {
+      return submitter.submit(new Callable<Long>() {
+         public Long call() {
+            return delegate.countBlobs(container, options);
+         }
+      });
+   }
+
+   @Override
+   public String toString() {
+      return String.format("async(%s)", delegate);
+   }
+}
@@ -18,15 +18,42 @@ package org.jclouds.openstack.swift.v1.blobstore;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.Iterables.tryFind;
+import static com.google.common.io.Closeables.closeQuietly;
 import static com.google.common.collect.Lists.transform;
+import static com.google.common.net.HttpHeaders.CONTENT_RANGE;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
 import static org.jclouds.blobstore.options.ListContainerOptions.Builder.recursive;
 import static org.jclouds.location.predicates.LocationPredicates.idEquals;
-
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.AUTO_SEGMENT_THRESHOLD;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.BULK_DELETE_BATCH_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.BULK_DELETE_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.CONTAINER_CACHE_SPEC;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.DETAILED_LIST_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MAX_MANIFEST_SEGMENTS;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MULTIPART_PARALLELISM;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.MULTIPART_SEGMENT_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_CHUNK_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_DEPTH;
+import static org.jclouds.openstack.swift.v1.io.ContentRanges.checkRange;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
@@ -45,39 +72,66 @@ import org.jclouds.blobstore.options.CreateContainerOptions;
 import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
 import org.jclouds.blobstore.options.PutOptions;
-import org.jclouds.blobstore.strategy.ClearListStrategy;
 import org.jclouds.collect.Memoized;
 import org.jclouds.domain.Location;
+import org.jclouds.http.HttpResponseException;
 import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.io.Payloads;
 import org.jclouds.io.payloads.ByteArrayPayload;
 import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToBlobMetadata;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToListContainerOptions;
 import org.jclouds.openstack.swift.v1.blobstore.functions.ToResourceMetadata;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelBulkDelete;
+import org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelMultipartUpload;
+import org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelSegmentUpload;
 import org.jclouds.openstack.swift.v1.domain.Container;
 import org.jclouds.openstack.swift.v1.domain.ObjectList;
 import org.jclouds.openstack.swift.v1.domain.SwiftObject;
 import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.io.DigestingPayload;
+import org.jclouds.openstack.swift.v1.io.ReadAheadInputStream;
+import org.jclouds.openstack.swift.v1.io.TeeLimitInputStream;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.inject.AbstractModule;
-import com.google.inject.Injector;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.assistedinject.Assisted;
 
 public class RegionScopedSwiftBlobStore implements BlobStore {
 
    @Inject
-   protected RegionScopedSwiftBlobStore(Injector baseGraph, BlobStoreContext context, SwiftApi api,
-         @Memoized Supplier<Set<? extends Location>> locations, @Assisted String regionId) {
+   protected RegionScopedSwiftBlobStore(BlobStoreContext context, SwiftApi api,
+         @Memoized Supplier<Set<? extends Location>> locations, PayloadSlicer slicer,
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor,
+         @Named(MULTIPART_SEGMENT_SIZE) long segmentSize, @Named(MULTIPART_PARALLELISM) int parallelism,
+         @Named(AUTO_SEGMENT_THRESHOLD) long autoSegmentThreshold,
+         @Named(MAX_MANIFEST_SEGMENTS) int maxManifestSegments,
+         @Named(BULK_DELETE_BATCH_SIZE) int bulkDeleteBatchSize,
+         @Named(BULK_DELETE_PARALLELISM) int bulkDeleteParallelism,
+         @Named(CONTAINER_CACHE_SPEC) String containerCacheSpec,
+         @Named(DETAILED_LIST_PARALLELISM) int detailedListParallelism,
+         @Named(READ_AHEAD_CHUNK_SIZE) int readAheadChunkSize, @Named(READ_AHEAD_DEPTH) int readAheadDepth,
+         @Assisted String regionId) {
       checkNotNull(regionId, "regionId");
       Optional<? extends Location> found = tryFind(locations.get(), idEquals(regionId));
       checkArgument(found.isPresent(), "region %s not in %s", regionId, locations.get());
@@ -85,19 +139,36 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       this.toResourceMetadata = new ToResourceMetadata(found.get());
       this.context = context;
       this.api = api;
-      // until we parameterize ClearListStrategy with a factory
-      this.clearList = baseGraph.createChildInjector(new AbstractModule() {
-         @Override
-         protected void configure() {
-            bind(BlobStore.class).toInstance(RegionScopedSwiftBlobStore.this);
+      this.multipartUpload = new ParallelMultipartUpload(api, regionId, slicer, userExecutor, segmentSize,
+            parallelism, maxManifestSegments);
+      checkArgument(autoSegmentThreshold > 0 && autoSegmentThreshold <= ParallelMultipartUpload.MAX_SEGMENT_SIZE,
+            "autoSegmentThreshold must be between 1 and %s, but was %s", ParallelMultipartUpload.MAX_SEGMENT_SIZE,
+            autoSegmentThreshold);
+      this.autoSegmentThreshold = autoSegmentThreshold;
+      this.userExecutor = userExecutor;
+      this.detailedListParallelism = detailedListParallelism;
+      this.readAheadChunkSize = readAheadChunkSize;
+      this.readAheadDepth = readAheadDepth;
+      this.bulkDelete = new ParallelBulkDelete(api, regionId, userExecutor, bulkDeleteBatchSize,
+            bulkDeleteParallelism, BULK_DELETE_RETRIES);
+      this.containerCache = CacheBuilder.from(containerCacheSpec).build(new CacheLoader<String, Optional<Container>>() {
+         public Optional<Container> load(String container) {
+            return Optional.fromNullable(api.containerApiInRegion(region.getId()).get(container));
          }
-      }).getInstance(ClearListStrategy.class);
+      });
    }
 
    private final BlobStoreContext context;
-   private final ClearListStrategy clearList;
+   private static final int BULK_DELETE_RETRIES = 3;
+   private final ParallelBulkDelete bulkDelete;
    private final SwiftApi api;
    private final Location region;
+   private final ParallelMultipartUpload multipartUpload;
+   private final long autoSegmentThreshold;
+   private final ListeningExecutorService userExecutor;
+   private final int detailedListParallelism;
+   private final int readAheadChunkSize;
+   private final int readAheadDepth;
    private final BlobToHttpGetOptions toGetOptions = new BlobToHttpGetOptions();
    private final ToListContainerOptions toListContainerOptions = new ToListContainerOptions();
    private final ToResourceMetadata toResourceMetadata;
@@ -109,10 +180,9 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
 
    @Override
    public PageSet<? extends StorageMetadata> list() {
-      // TODO: there may eventually be >10k containers..
-      FluentIterable<StorageMetadata> containers = api.containerApiInRegion(region.getId()).listFirstPage()
-            .transform(toResourceMetadata);
-      return new PageSetImpl<StorageMetadata>(containers, null);
+      // BlobStore.list() can't be called again with a marker, so every page is read
+      return new PageSetImpl<StorageMetadata>(api.containerApiInRegion(region.getId()).list().concat()
+            .transform(toResourceMetadata), null);
    }
 
    @Override
@@ -130,10 +200,11 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
    @Override
    public boolean createContainerInLocation(Location location, String container, CreateContainerOptions options) {
       checkArgument(location == null || location.equals(region), "location must be null or %s", region);
-      if (options.isPublicRead()) {
-         return api.containerApiInRegion(region.getId()).createIfAbsent(container, ANYBODY_READ);
-      }
-      return api.containerApiInRegion(region.getId()).createIfAbsent(container, BASIC_CONTAINER);
+      boolean created = api.containerApiInRegion(region.getId()).createIfAbsent(container,
+            options.isPublicRead() ? ANYBODY_READ : BASIC_CONTAINER);
+      // after the PUT, so that a concurrent lookup can't cache the container as absent
+      containerCache.invalidate(container);
+      return created;
    }
 
    private static final org.jclouds.openstack.swift.v1.options.CreateContainerOptions BASIC_CONTAINER = new org.jclouds.openstack.swift.v1.options.CreateContainerOptions();
@@ -159,17 +230,39 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
          String marker = list.size() == limit ? list.get(limit - 1).getName() : null;
          // TODO: we should probably deprecate this option
          if (options.isDetailed()) {
-            list = transform(list, new Function<StorageMetadata, StorageMetadata>() {
+            list = fetchBlobMetadata(container, list);
+         }
+         return new PageSetImpl<StorageMetadata>(list, marker);
+      }
+   }
+
+   /**
+    * HEADs every blob in {@code listed} concurrently, keeping listing order.
+    * Blobs removed since the listing are left out.
+    */
+   private List<StorageMetadata> fetchBlobMetadata(final String container, List<? extends StorageMetadata> listed) {
+      BoundedSubmitter submitter = new BoundedSubmitter(userExecutor, detailedListParallelism);
+      List<ListenableFuture<StorageMetadata>> futures = Lists.newArrayListWithCapacity(listed.size());
+      try {
+         for (final StorageMetadata input : listed) {
+            if (input.getType() != StorageType.BLOB) {
+               futures.add(Futures.immediateFuture(input));
+               continue;
+            }
+            futures.add(submitter.submit(new Callable<StorageMetadata>() {
                @Override
-               public StorageMetadata apply(StorageMetadata input) {
-                  if (input.getType() != StorageType.BLOB) {
-                     return input;
-                  }
+               public StorageMetadata call() {
                   return blobMetadata(container, input.getName());
                }
-            });
+            }));
          }
-         return new PageSetImpl<StorageMetadata>(list, marker);
+         List<StorageMetadata> detailed = BoundedSubmitter.awaitAll(futures);
+         return ImmutableList.copyOf(Iterables.filter(detailed, Predicates.notNull()));
+      } catch (RuntimeException e) {
+         for (ListenableFuture<StorageMetadata> future : futures) {
+            future.cancel(true);
+         }
+         throw e;
       }
    }
 
@@ -185,11 +278,99 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
 
    @Override
    public String putBlob(String container, Blob blob, PutOptions options) {
-      if (options.isMultipart()) {
-         throw new UnsupportedOperationException();
+      Payload payload = blob.getPayload();
+      Long contentLength = payload.getContentMetadata().getContentLength();
+      if (options.isMultipart() || (contentLength != null && contentLength > autoSegmentThreshold)) {
+         return multipartUpload.execute(container, blob);
       }
       ObjectApi objectApi = api.objectApiInRegionForContainer(region.getId(), container);
-      return objectApi.replace(blob.getMetadata().getName(), blob.getPayload(), blob.getMetadata().getUserMetadata());
+      String name = blob.getMetadata().getName();
+      if (contentLength == null) {
+         return putStream(objectApi, container, blob);
+      }
+      if (payload.getContentMetadata().getContentMD5() != null) {
+         // Swift checks the md5 itself, as SetPayload sends it as the ETag
+         return objectApi.replace(name, payload, blob.getMetadata().getUserMetadata());
+      }
+      return putDigesting(objectApi, name, payload, blob.getMetadata().getUserMetadata());
+   }
+
+   /**
+    * Sends a stream of unknown length in a single PUT, and only switches to
+    * segments once it turns out longer than {@code autoSegmentThreshold}. The
+    * bytes sent until then are kept in a temporary file, so the segmented
+    * upload starts over without the stream being repeatable. The aborted PUT
+    * leaves any existing object in place.
+    */
+   private String putStream(ObjectApi objectApi, String container, Blob blob) {
+      String name = blob.getMetadata().getName();
+      Map<String, String> metadata = blob.getMetadata().getUserMetadata();
+      String contentType = blob.getPayload().getContentMetadata().getContentType();
+      InputStream in = blob.getPayload().getInput();
+      File copy = null;
+      OutputStream out = null;
+      try {
+         int headLimit = (int) Math.min(ReplicatedSwiftBlobStore.MEMORY_BUFFER_LIMIT, autoSegmentThreshold);
+         byte[] head = ByteStreams.toByteArray(ByteStreams.limit(in, headLimit + 1));
+         if (head.length <= headLimit) {
+            // the whole stream is at hand, so let Swift check it
+            return objectApi.replace(name, withContentType(ParallelSegmentUpload.withMD5(head), contentType),
+                  metadata);
+         }
+         InputStream rest = new SequenceInputStream(new ByteArrayInputStream(head), in);
+         if (head.length > autoSegmentThreshold) {
+            blob.setPayload(withContentType(Payloads.newInputStreamPayload(rest), contentType));
+            return multipartUpload.execute(container, blob);
+         }
+         copy = File.createTempFile("jclouds-stream-", ".payload");
+         out = new BufferedOutputStream(new FileOutputStream(copy));
+         TeeLimitInputStream tee = new TeeLimitInputStream(rest, out, autoSegmentThreshold);
+         try {
+            return putDigesting(objectApi, name, withContentType(Payloads.newInputStreamPayload(tee), contentType),
+                  metadata);
+         } catch (RuntimeException e) {
+            if (!tee.exceeded()) {
+               throw e;
+            }
+         }
+         out.close();
+         blob.setPayload(withContentType(
+               Payloads.newInputStreamPayload(new SequenceInputStream(new FileInputStream(copy), in)), contentType));
+         return multipartUpload.execute(container, blob);
+      } catch (IOException e) {
+         throw propagate(e);
+      } finally {
+         closeQuietly(in);
+         if (copy != null) {
+            try {
+               Closeables.close(out, true);
+            } catch (IOException impossible) {
+               throw new AssertionError(impossible);
+            }
+            copy.delete();
+         }
+      }
+   }
+
+   /**
+    * Uploads a payload whose MD5 is not known up front, checking the one it
+    * had on the way out against the ETag, and deleting the object on mismatch.
+    */
+   private static String putDigesting(ObjectApi objectApi, String name, Payload payload,
+         Map<String, String> metadata) {
+      DigestingPayload digesting = new DigestingPayload(payload);
+      String etag = objectApi.replace(name, digesting, metadata);
+      try {
+         return digesting.checkETag(name, etag);
+      } catch (IllegalStateException e) {
+         objectApi.delete(name);
+         throw e;
+      }
+   }
+
+   private static Payload withContentType(Payload payload, String contentType) {
+      payload.getContentMetadata().setContentType(contentType);
+      return payload;
    }
 
    @Override
@@ -209,7 +390,14 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
    @Override
    public Blob getBlob(String container, String name, GetOptions options) {
       ObjectApi objectApi = api.objectApiInRegionForContainer(region.getId(), container);
-      SwiftObject object = objectApi.get(name, toGetOptions.apply(options));
+      org.jclouds.http.options.GetOptions httpOptions = toGetOptions.apply(options);
+      if (readAheadDepth > 0 && httpOptions.buildRequestHeaders().isEmpty()) {
+         return getBlobReadingAhead(container, objectApi, name);
+      }
+      return toBlob(container, objectApi.get(name, httpOptions));
+   }
+
+   private Blob toBlob(String container, SwiftObject object) {
       if (object == null) {
          return null;
       }
@@ -219,6 +407,53 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       return blob;
    }
 
+   /**
+    * Returns a blob whose payload downloads ahead of the consumer with
+    * ranged GETs, unless it fits in one chunk anyway. The first GET asks for
+    * the first chunk only, and its {@code Content-Range} gives the size. A
+    * server which ignores the range returns the whole object instead.
+    */
+   private Blob getBlobReadingAhead(String container, ObjectApi objectApi, String name) {
+      SwiftObject first;
+      try {
+         first = objectApi.get(name, new org.jclouds.http.options.GetOptions().range(0, readAheadChunkSize - 1));
+      } catch (HttpResponseException e) {
+         // empty objects have no first byte to range over
+         if (e.getResponse() == null || e.getResponse().getStatusCode() != 416) {
+            throw e;
+         }
+         return toBlob(container, objectApi.get(name, org.jclouds.http.options.GetOptions.NONE));
+      }
+      if (first == null) {
+         return null;
+      }
+      if (!first.headers().containsKey(CONTENT_RANGE)) {
+         return toBlob(container, first);
+      }
+      Long size;
+      try {
+         size = checkRange(first, 0, readAheadChunkSize - 1);
+      } catch (IOException e) {
+         first.payload().release();
+         throw propagate(e);
+      }
+      if (size == null) {
+         // a partial response of unknown size can't be read ahead
+         first.payload().release();
+         return toBlob(container, objectApi.get(name, org.jclouds.http.options.GetOptions.NONE));
+      }
+      if (size <= readAheadChunkSize) {
+         return toBlob(container, first);
+      }
+      Payload payload = Payloads.newInputStreamPayload(new ReadAheadInputStream(objectApi, first, size,
+            userExecutor, readAheadChunkSize, readAheadDepth));
+      payload.getContentMetadata().setContentLength(size);
+      payload.getContentMetadata().setContentType(first.payload().getContentMetadata().getContentType());
+      Multimap<String, String> headers = LinkedHashMultimap.create(first.headers());
+      headers.removeAll(CONTENT_RANGE);
+      return toBlob(container, first.toBuilder().headers(headers).payload(payload).build());
+   }
+
    @Override
    public void removeBlob(String container, String name) {
       api.objectApiInRegionForContainer(region.getId(), container).delete(name);
@@ -271,8 +506,8 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
 
    @Override
    public void clearContainer(String containerName, ListContainerOptions options) {
-      // this could be implemented to use bulk delete
-      clearList.execute(containerName, options);
+      bulkDelete.clearContainer(containerName, options);
+      containerCache.invalidate(containerName);
    }
 
    @Override
@@ -282,12 +517,15 @@ public class RegionScopedSwiftBlobStore implements BlobStore {
       containerCache.invalidate(container);
    }
 
-   protected final LoadingCache<String, Optional<Container>> containerCache = CacheBuilder.newBuilder().build(
-         new CacheLoader<String, Optional<Container>>() {
-            public Optional<Container> load(String container) {
-               return Optional.fromNullable(api.containerApiInRegion(region.getId()).get(container));
-            }
-         });
+   protected final LoadingCache<String, Optional<Container>> containerCache;
+
+   /**
+    * Hit, miss and eviction counts of the container metadata cache. All zero
+    * unless {@code recordStats} is part of the configured cache spec.
+    */
+   public CacheStats containerCacheStats() {
+      return containerCache.stats();
+   }
 
    protected Function<SwiftObject, MutableBlobMetadata> toBlobMetadata(String container) {
       return new ToBlobMetadata(containerCache.getUnchecked(container).get());
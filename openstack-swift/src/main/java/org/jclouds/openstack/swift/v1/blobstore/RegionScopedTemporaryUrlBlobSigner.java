@@ -18,6 +18,7 @@ package org.jclouds.openstack.swift.v1.blobstore;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.jclouds.Constants.PROPERTY_SESSION_INTERVAL;
+import static org.jclouds.Constants.PROPERTY_USER_THREADS;
 
 import java.net.URI;
 import java.util.Map;
@@ -33,10 +34,13 @@ import org.jclouds.http.HttpRequest;
 import org.jclouds.http.Uris;
 import org.jclouds.http.options.GetOptions;
 import org.jclouds.location.Region;
+import org.jclouds.openstack.swift.v1.RefreshAheadTemporaryUrlKey;
 import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.swift.v1.TemporaryUrlSigner;
 
 import com.google.common.base.Supplier;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.name.Named;
@@ -50,19 +54,28 @@ public class RegionScopedTemporaryUrlBlobSigner implements BlobRequestSigner {
    @Inject
    protected RegionScopedTemporaryUrlBlobSigner(@Region Supplier<Map<String, Supplier<URI>>> regionToUris,
          @Named(PROPERTY_SESSION_INTERVAL) long seconds, @TimeStamp Provider<Long> timestamp, SwiftApi api,
-         @Assisted String regionId) {
+         @Named(PROPERTY_USER_THREADS) ListeningExecutorService userExecutor, @Assisted String regionId) {
       checkNotNull(regionId, "regionId");
       this.timestamp = timestamp;
-      this.signer = TemporaryUrlSigner.checkApiEvery(api.accountApiInRegion(regionId), seconds);
+      this.key = RefreshAheadTemporaryUrlKey.create(api.accountApiInRegion(regionId), seconds, userExecutor);
+      this.signer = TemporaryUrlSigner.usingKey(key);
       this.storageUrl = regionToUris.get().get(regionId).get();
    }
 
    private static final long YEAR = TimeUnit.DAYS.toSeconds(365);
    private final BlobToHttpGetOptions toGetOptions = new BlobToHttpGetOptions();
    private final Provider<Long> timestamp;
+   private final RefreshAheadTemporaryUrlKey key;
    private final TemporaryUrlSigner signer;
    private final URI storageUrl;
 
+   /**
+    * Reload counts and latencies of the temporary url key.
+    */
+   public CacheStats temporaryUrlKeyStats() {
+      return key.stats();
+   }
+
    @Override
    public HttpRequest signGetBlob(String container, String name) {
       return signGetBlob(container, name, YEAR);
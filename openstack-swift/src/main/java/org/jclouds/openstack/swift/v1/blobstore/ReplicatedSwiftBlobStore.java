@@ -0,0 +1,569 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobBuilder;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.domain.Location;
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.ByteArrayPayload;
+import org.jclouds.io.payloads.FilePayload;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedTimeoutException;
+
+/**
+ * {@link BlobStore} that keeps the same containers and blobs in several
+ * regions.
+ *
+ * Writes go to every region in parallel and return once {@code writeQuorum}
+ * of them succeeded; the others finish in the background. Reads go to the
+ * region that answered fastest so far, and fail over to the next one on
+ * error, on timeout, or when a blob is missing there, since a write may not
+ * have reached every region yet.
+ *
+ * Payloads that cannot be re-read are buffered once so each region can send
+ * them: in memory up to {@value #MEMORY_BUFFER_LIMIT} bytes, and in a
+ * temporary file beyond that, which is deleted once every region is done.
+ * Prefer file or byte array payloads for large blobs.
+ */
+public class ReplicatedSwiftBlobStore implements BlobStore {
+
+   /** weight of previous observations when averaging read latency, out of 8 */
+   private static final int LATENCY_DECAY = 7;
+
+   /** largest non-repeatable payload buffered in memory rather than on disk */
+   static final int MEMORY_BUFFER_LIMIT = 1024 * 1024;
+
+   private static final Runnable NO_CLEANUP = new Runnable() {
+      public void run() {
+      }
+   };
+
+   private final Map<String, BlobStore> regions;
+   private final ListeningExecutorService executor;
+   private final int writeQuorum;
+   private final long readTimeoutMillis;
+   private final Map<String, AtomicLong> latencies;
+   private final AtomicLong failedWrites = new AtomicLong();
+
+   /**
+    * @param regions
+    *           blobstore of each replica, keyed on region id. Reads try them
+    *           in this order until latencies are known.
+    * @param executor
+    *           runs the call to each region. It must not be the executor the
+    *           regional blobstores submit segment uploads and bulk deletes
+    *           to, since those calls wait for their own tasks there.
+    */
+   public ReplicatedSwiftBlobStore(Map<String, BlobStore> regions, ListeningExecutorService executor,
+         int writeQuorum, long readTimeoutMillis) {
+      this.regions = ImmutableMap.copyOf(checkNotNull(regions, "regions"));
+      checkArgument(!this.regions.isEmpty(), "regions must not be empty");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(writeQuorum > 0 && writeQuorum <= this.regions.size(),
+            "writeQuorum must be between 1 and %s, but was %s", this.regions.size(), writeQuorum);
+      this.writeQuorum = writeQuorum;
+      checkArgument(readTimeoutMillis > 0, "readTimeoutMillis must be positive, but was %s", readTimeoutMillis);
+      this.readTimeoutMillis = readTimeoutMillis;
+      ImmutableMap.Builder<String, AtomicLong> latencies = ImmutableMap.builder();
+      for (String regionId : this.regions.keySet()) {
+         latencies.put(regionId, new AtomicLong());
+      }
+      this.latencies = latencies.build();
+   }
+
+   /**
+    * @return average read latency of each region in nanoseconds, or zero if
+    *         it was not read from yet. Failed reads count as the timeout.
+    */
+   public Map<String, Long> latencies() {
+      ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+      for (Map.Entry<String, AtomicLong> entry : latencies.entrySet()) {
+         builder.put(entry.getKey(), entry.getValue().get());
+      }
+      return builder.build();
+   }
+
+   /**
+    * @return writes that failed in one region, whether or not the quorum was
+    *         reached elsewhere. These regions are missing data until the next
+    *         successful write of the same blob.
+    */
+   public long failedWrites() {
+      return failedWrites.get();
+   }
+
+   @Override
+   public BlobStoreContext getContext() {
+      return regions.values().iterator().next().getContext();
+   }
+
+   @Override
+   public BlobBuilder blobBuilder(String name) {
+      return new BlobBuilderImpl().name(name);
+   }
+
+   @Override
+   public Set<? extends Location> listAssignableLocations() {
+      ImmutableSet.Builder<Location> locations = ImmutableSet.builder();
+      for (BlobStore blobStore : regions.values()) {
+         locations.addAll(blobStore.listAssignableLocations());
+      }
+      return locations.build();
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list() {
+      return read(new RegionCall<PageSet<? extends StorageMetadata>>() {
+         public PageSet<? extends StorageMetadata> call(BlobStore blobStore) {
+            return blobStore.list();
+         }
+      }, false);
+   }
+
+   @Override
+   public boolean containerExists(final String container) {
+      return read(new RegionCall<Boolean>() {
+         public Boolean call(BlobStore blobStore) {
+            return blobStore.containerExists(container);
+         }
+      }, false);
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container) {
+      return createContainerInLocation(location, container, CreateContainerOptions.NONE);
+   }
+
+   /**
+    * Creates {@code container} in every region.
+    *
+    * @return what the region that completed the quorum returned
+    */
+   @Override
+   public boolean createContainerInLocation(Location location, final String container,
+         final CreateContainerOptions options) {
+      checkArgument(location == null, "replicated containers are created in every region, so location must be null");
+      return write(new RegionCall<Boolean>() {
+         public Boolean call(BlobStore blobStore) {
+            return blobStore.createContainerInLocation(null, container, options);
+         }
+      });
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(final String container, final ListContainerOptions options) {
+      return read(new RegionCall<PageSet<? extends StorageMetadata>>() {
+         public PageSet<? extends StorageMetadata> call(BlobStore blobStore) {
+            return blobStore.list(container, options);
+         }
+      }, false);
+   }
+
+   @Override
+   public void clearContainer(String container) {
+      clearContainer(container, ListContainerOptions.Builder.recursive());
+   }
+
+   @Override
+   public void clearContainer(final String container, final ListContainerOptions options) {
+      write(new RegionCall<Void>() {
+         public Void call(BlobStore blobStore) {
+            blobStore.clearContainer(container, options);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public void deleteContainer(final String container) {
+      write(new RegionCall<Void>() {
+         public Void call(BlobStore blobStore) {
+            blobStore.deleteContainer(container);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public boolean directoryExists(final String container, final String directory) {
+      return read(new RegionCall<Boolean>() {
+         public Boolean call(BlobStore blobStore) {
+            return blobStore.directoryExists(container, directory);
+         }
+      }, false);
+   }
+
+   @Override
+   public void createDirectory(final String container, final String directory) {
+      write(new RegionCall<Void>() {
+         public Void call(BlobStore blobStore) {
+            blobStore.createDirectory(container, directory);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public void deleteDirectory(final String container, final String directory) {
+      write(new RegionCall<Void>() {
+         public Void call(BlobStore blobStore) {
+            blobStore.deleteDirectory(container, directory);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public boolean blobExists(String container, String name) {
+      return blobMetadata(container, name) != null;
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob) {
+      return putBlob(container, blob, PutOptions.NONE);
+   }
+
+   /**
+    * @return the ETag returned by the region that completed the quorum
+    */
+   @Override
+   public String putBlob(final String container, final Blob blob, final PutOptions options) {
+      final File spilled = ensureRepeatable(blob);
+      return write(new RegionCall<String>() {
+         public String call(BlobStore blobStore) {
+            return blobStore.putBlob(container, blob, options);
+         }
+      }, spilled == null ? NO_CLEANUP : new Runnable() {
+         public void run() {
+            spilled.delete();
+         }
+      });
+   }
+
+   /**
+    * @return the temporary file the payload was spilled to, or null if it was
+    *         repeatable already or fit in memory
+    */
+   private static File ensureRepeatable(Blob blob) {
+      Payload payload = blob.getPayload();
+      if (payload == null || payload.isRepeatable()) {
+         return null;
+      }
+      InputStream in = null;
+      File file = null;
+      try {
+         in = payload.openStream();
+         byte[] head = ByteStreams.toByteArray(ByteStreams.limit(in, MEMORY_BUFFER_LIMIT + 1));
+         Payload buffered;
+         long length;
+         if (head.length <= MEMORY_BUFFER_LIMIT) {
+            buffered = new ByteArrayPayload(head);
+            length = head.length;
+         } else {
+            file = File.createTempFile("jclouds-replicated-", ".payload");
+            OutputStream out = new FileOutputStream(file);
+            try {
+               out.write(head);
+               length = head.length + ByteStreams.copy(in, out);
+            } finally {
+               Closeables.close(out, true);
+            }
+            buffered = new FilePayload(file);
+         }
+         buffered.setContentMetadata(payload.getContentMetadata());
+         buffered.getContentMetadata().setContentLength(length);
+         blob.setPayload(buffered);
+         return file;
+      } catch (IOException e) {
+         if (file != null) {
+            file.delete();
+         }
+         throw propagate(e);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   @Override
+   public BlobMetadata blobMetadata(final String container, final String name) {
+      return read(new RegionCall<BlobMetadata>() {
+         public BlobMetadata call(BlobStore blobStore) {
+            return blobStore.blobMetadata(container, name);
+         }
+      }, true);
+   }
+
+   @Override
+   public Blob getBlob(String container, String name) {
+      return getBlob(container, name, GetOptions.NONE);
+   }
+
+   @Override
+   public Blob getBlob(final String container, final String name, final GetOptions options) {
+      return read(new RegionCall<Blob>() {
+         public Blob call(BlobStore blobStore) {
+            return blobStore.getBlob(container, name, options);
+         }
+      }, true);
+   }
+
+   @Override
+   public void removeBlob(final String container, final String name) {
+      write(new RegionCall<Void>() {
+         public Void call(BlobStore blobStore) {
+            blobStore.removeBlob(container, name);
+            return null;
+         }
+      });
+   }
+
+   @Override
+   public long countBlobs(final String container) {
+      return read(new RegionCall<Long>() {
+         public Long call(BlobStore blobStore) {
+            return blobStore.countBlobs(container);
+         }
+      }, false);
+   }
+
+   @Override
+   public long countBlobs(final String container, final ListContainerOptions options) {
+      return read(new RegionCall<Long>() {
+         public Long call(BlobStore blobStore) {
+            return blobStore.countBlobs(container, options);
+         }
+      }, false);
+   }
+
+   private interface RegionCall<T> {
+      T call(BlobStore blobStore);
+   }
+
+   /**
+    * Reads from one region. If the reader stops waiting, for example on
+    * timeout, the payload of a result that arrives anyway is released rather
+    * than leaving its connection open.
+    */
+   private static class ReadAttempt<T> implements Callable<T> {
+      private final RegionCall<T> call;
+      private final BlobStore blobStore;
+      private final AtomicBoolean abandoned = new AtomicBoolean();
+      private final AtomicReference<T> unclaimed = new AtomicReference<T>();
+
+      private ReadAttempt(RegionCall<T> call, BlobStore blobStore) {
+         this.call = call;
+         this.blobStore = blobStore;
+      }
+
+      @Override
+      public T call() {
+         T result = call.call(blobStore);
+         unclaimed.set(result);
+         if (abandoned.get()) {
+            release(unclaimed.getAndSet(null));
+         }
+         return result;
+      }
+
+      /**
+       * Called by the reader once it no longer waits for the result. Whichever
+       * of this and {@link #call} comes last releases the result.
+       */
+      private void abandon() {
+         abandoned.set(true);
+         release(unclaimed.getAndSet(null));
+      }
+
+      private static void release(Object result) {
+         if (result instanceof Blob && Blob.class.cast(result).getPayload() != null) {
+            Blob.class.cast(result).getPayload().release();
+         }
+      }
+   }
+
+   private <T> T write(RegionCall<T> call) {
+      return write(call, NO_CLEANUP);
+   }
+
+   /**
+    * Runs {@code call} in every region, returning the result of the region
+    * that completes the quorum, or failing once the quorum can't be reached.
+    *
+    * @param whenAllDone
+    *           runs once every region finished, which may be after this
+    *           returns
+    */
+   private <T> T write(final RegionCall<T> call, Runnable whenAllDone) {
+      final SettableFuture<T> quorum = SettableFuture.create();
+      final AtomicInteger successes = new AtomicInteger();
+      final AtomicInteger failures = new AtomicInteger();
+      final int tolerated = regions.size() - writeQuorum;
+      List<ListenableFuture<T>> futures = Lists.newArrayList();
+      for (final BlobStore blobStore : regions.values()) {
+         ListenableFuture<T> future = executor.submit(new Callable<T>() {
+            public T call() {
+               return call.call(blobStore);
+            }
+         });
+         futures.add(future);
+         Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+               if (successes.incrementAndGet() == writeQuorum) {
+                  quorum.set(result);
+               }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+               failedWrites.incrementAndGet();
+               if (failures.incrementAndGet() > tolerated) {
+                  quorum.setException(t);
+               }
+            }
+         });
+      }
+      Futures.successfulAsList(futures).addListener(whenAllDone, sameThreadExecutor());
+      try {
+         return quorum.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw propagate(e);
+      } catch (ExecutionException e) {
+         throw propagate(e.getCause());
+      }
+   }
+
+   /**
+    * Runs {@code call} in the fastest region so far, moving on to the next
+    * on failure, timeout, or optionally a null result.
+    *
+    * @return the first result, or null if every region was asked and none
+    *         of them failed
+    */
+   private <T> T read(final RegionCall<T> call, boolean failOverOnNull) {
+      RuntimeException lastFailure = null;
+      for (String regionId : regionsByLatency()) {
+         final BlobStore blobStore = regions.get(regionId);
+         long start = System.nanoTime();
+         ReadAttempt<T> attempt = new ReadAttempt<T>(call, blobStore);
+         ListenableFuture<T> future = executor.submit(attempt);
+         try {
+            T result = future.get(readTimeoutMillis, MILLISECONDS);
+            recordLatency(regionId, System.nanoTime() - start);
+            if (result != null || !failOverOnNull) {
+               return result;
+            }
+         } catch (InterruptedException e) {
+            future.cancel(true);
+            attempt.abandon();
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+         } catch (ExecutionException e) {
+            recordLatency(regionId, MILLISECONDS.toNanos(readTimeoutMillis));
+            Throwable cause = e.getCause();
+            lastFailure = cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+         } catch (TimeoutException e) {
+            future.cancel(true);
+            attempt.abandon();
+            recordLatency(regionId, MILLISECONDS.toNanos(readTimeoutMillis));
+            lastFailure = new UncheckedTimeoutException(String.format("region %s did not answer in %sms", regionId,
+                  readTimeoutMillis), e);
+         }
+      }
+      // a missing blob is only reported as such if no region failed to look
+      if (lastFailure != null) {
+         throw lastFailure;
+      }
+      return null;
+   }
+
+   private List<String> regionsByLatency() {
+      return Ordering.natural().onResultOf(new Function<String, Long>() {
+         public Long apply(String regionId) {
+            return latencies.get(regionId).get();
+         }
+      }).sortedCopy(ImmutableList.copyOf(regions.keySet()));
+   }
+
+   private void recordLatency(String regionId, long nanos) {
+      AtomicLong latency = latencies.get(regionId);
+      while (true) {
+         long previous = latency.get();
+         long updated = previous == 0 ? nanos : (previous * LATENCY_DECAY + nanos) / (LATENCY_DECAY + 1);
+         if (latency.compareAndSet(previous, updated)) {
+            return;
+         }
+      }
+   }
+
+   @Override
+   public String toString() {
+      return String.format("replicated(%s, writeQuorum=%s)", regions.keySet(), writeQuorum);
+   }
+}
@@ -16,14 +16,21 @@
  */
 package org.jclouds.openstack.swift.v1.blobstore.config;
 
+import static com.google.common.base.Throwables.propagate;
+
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.jclouds.blobstore.BlobRequestSigner;
 import org.jclouds.date.TimeStamp;
 import org.jclouds.openstack.swift.v1.blobstore.RegionScopedTemporaryUrlBlobSigner;
 
 import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ForwardingObject;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
@@ -40,14 +47,27 @@ public class SignUsingTemporaryUrls extends AbstractModule {
    }
 
    @Provides
+   @Singleton
    Function<String, BlobRequestSigner> blobRequestSigner(FactoryFunction in) {
       return in;
    }
 
+   /**
+    * Creates one signer per region, so that its temporary url key, refreshed
+    * ahead of expiry, and its per-thread MACs are shared by every caller.
+    */
    static class FactoryFunction extends ForwardingObject implements Function<String, BlobRequestSigner> {
       @Inject
       Factory delegate;
 
+      private final LoadingCache<String, BlobRequestSigner> signers = CacheBuilder.newBuilder().build(
+            new CacheLoader<String, BlobRequestSigner>() {
+               @Override
+               public BlobRequestSigner load(String regionId) {
+                  return delegate.create(regionId);
+               }
+            });
+
       @Override
       protected Factory delegate() {
          return delegate;
@@ -55,7 +75,11 @@ public class SignUsingTemporaryUrls extends AbstractModule {
 
       @Override
       public BlobRequestSigner apply(String in) {
-         return delegate.create(in);
+         try {
+            return signers.getUnchecked(in);
+         } catch (UncheckedExecutionException e) {
+            throw propagate(e.getCause());
+         }
       }
    }
 
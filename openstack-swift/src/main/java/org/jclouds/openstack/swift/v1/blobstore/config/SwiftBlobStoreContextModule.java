@@ -16,15 +16,33 @@
  */
 package org.jclouds.openstack.swift.v1.blobstore.config;
 
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.COORDINATOR_THREADS;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
 
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.lifecycle.Closer;
 import org.jclouds.openstack.swift.v1.blobstore.RegionScopedBlobStoreContext;
 import org.jclouds.openstack.swift.v1.blobstore.RegionScopedSwiftBlobStore;
 
 import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ForwardingObject;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
@@ -42,14 +60,48 @@ public class SwiftBlobStoreContextModule extends AbstractModule {
    }
 
    @Provides
+   @Singleton
    Function<String, BlobStore> blobStore(FactoryFunction in) {
       return in;
    }
 
+   /**
+    * Runs operations that block on work they submit to the user executor, so
+    * that they can never take every thread that work needs.
+    */
+   @Provides
+   @Singleton
+   @Named(COORDINATOR_THREADS)
+   ListeningExecutorService coordinatorExecutor(@Named(COORDINATOR_THREADS) int threads, Closer closer) {
+      ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("swift coordinator %d").setDaemon(true)
+            .build();
+      final ExecutorService executor = threads == 0 ? Executors.newCachedThreadPool(factory) : Executors
+            .newFixedThreadPool(threads, factory);
+      closer.addToClose(new Closeable() {
+         @Override
+         public void close() {
+            executor.shutdownNow();
+         }
+      });
+      return listeningDecorator(executor);
+   }
+
+   /**
+    * Creates one blobstore per region, so that state such as the container
+    * cache is shared by every caller of that region.
+    */
    static class FactoryFunction extends ForwardingObject implements Function<String, BlobStore> {
       @Inject
       Factory delegate;
 
+      private final LoadingCache<String, BlobStore> blobStores = CacheBuilder.newBuilder().build(
+            new CacheLoader<String, BlobStore>() {
+               @Override
+               public BlobStore load(String regionId) {
+                  return delegate.create(regionId);
+               }
+            });
+
       @Override
       protected Factory delegate() {
          return delegate;
@@ -57,7 +109,11 @@ public class SwiftBlobStoreContextModule extends AbstractModule {
 
       @Override
       public BlobStore apply(String in) {
-         return delegate.create(in);
+         try {
+            return blobStores.getUnchecked(in);
+         } catch (UncheckedExecutionException e) {
+            throw propagate(e.getCause());
+         }
       }
    }
 }
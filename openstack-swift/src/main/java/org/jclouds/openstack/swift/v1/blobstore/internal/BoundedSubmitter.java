@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Submits tasks to a shared executor, but never lets more than {@code permits}
+ * of them run at the same time. Callers block in {@link #submit} until a
+ * permit frees up, which also bounds the memory of producers that buffer work
+ * before submitting it.
+ */
+public class BoundedSubmitter {
+
+   private final ListeningExecutorService executor;
+   private final Semaphore permits;
+
+   public BoundedSubmitter(ListeningExecutorService executor, int permits) {
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(permits > 0, "permits must be positive, but was %s", permits);
+      this.permits = new Semaphore(permits);
+   }
+
+   /**
+    * Waits for a permit, then runs {@code task} on the executor. The permit is
+    * returned when the resulting future completes, fails or is cancelled.
+    */
+   public <T> ListenableFuture<T> submit(Callable<T> task) {
+      checkNotNull(task, "task");
+      permits.acquireUninterruptibly();
+      ListenableFuture<T> future;
+      try {
+         future = executor.submit(task);
+      } catch (RuntimeException e) {
+         permits.release();
+         throw e;
+      }
+      future.addListener(new Runnable() {
+         @Override
+         public void run() {
+            permits.release();
+         }
+      }, sameThreadExecutor());
+      return future;
+   }
+
+   /**
+    * Waits for all {@code futures}, rethrowing the cause of the first failure
+    * as-is, or wrapped if it is a checked exception.
+    */
+   public static <T> List<T> awaitAll(Iterable<? extends ListenableFuture<? extends T>> futures) {
+      try {
+         return Futures.<T> allAsList(futures).get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw propagate(e);
+      } catch (ExecutionException e) {
+         throw propagate(e.getCause());
+      }
+   }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Runs tasks on a shared executor, but never more than {@code permits} of
+ * them at the same time. Unlike {@link BoundedSubmitter}, callers never block:
+ * tasks over the limit wait in a queue and are handed to the executor as
+ * running ones complete, so a backlog costs memory rather than threads.
+ */
+public class QueueingSubmitter {
+
+   private final Executor executor;
+   private final int permits;
+   private final Queue<Pending<?>> queue = new ConcurrentLinkedQueue<Pending<?>>();
+   private final AtomicInteger running = new AtomicInteger();
+
+   public QueueingSubmitter(Executor executor, int permits) {
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(permits > 0, "permits must be positive, but was %s", permits);
+      this.permits = permits;
+   }
+
+   /**
+    * Queues {@code task} and returns immediately. Cancelling the future of a
+    * task that did not start yet keeps it from ever running.
+    */
+   public <T> ListenableFuture<T> submit(Callable<T> task) {
+      Pending<T> pending = new Pending<T>(checkNotNull(task, "task"));
+      queue.add(pending);
+      drain();
+      return pending.result;
+   }
+
+   /**
+    * @return tasks waiting for a permit
+    */
+   public int queued() {
+      return queue.size();
+   }
+
+   /**
+    * @return tasks currently running on the executor
+    */
+   public int running() {
+      return running.get();
+   }
+
+   /**
+    * Hands queued tasks to the executor while permits are left. Called on
+    * every submission and every completion, so no task is left behind.
+    */
+   private void drain() {
+      while (!queue.isEmpty()) {
+         int current = running.get();
+         if (current >= permits) {
+            return;
+         }
+         if (!running.compareAndSet(current, current + 1)) {
+            continue;
+         }
+         Pending<?> next = queue.poll();
+         if (next == null || next.result.isDone()) {
+            running.decrementAndGet();
+            continue;
+         }
+         try {
+            executor.execute(next);
+         } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            next.result.setException(e);
+         }
+      }
+   }
+
+   private final class Pending<T> implements Runnable {
+      private final Callable<T> task;
+      private final SettableFuture<T> result = SettableFuture.create();
+
+      private Pending(Callable<T> task) {
+         this.task = task;
+      }
+
+      @Override
+      public void run() {
+         try {
+            if (!result.isDone()) {
+               result.set(task.call());
+            }
+         } catch (Throwable t) {
+            result.setException(t);
+         } finally {
+            running.decrementAndGet();
+            drain();
+         }
+      }
+   }
+}
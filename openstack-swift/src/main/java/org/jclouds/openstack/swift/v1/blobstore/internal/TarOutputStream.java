@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.google.common.io.Files;
+
+/**
+ * Writes regular files as a ustar archive, one entry at a time, so archives
+ * can be produced while they are being sent. Names which do not fit ustar's
+ * name and prefix fields are written with a GNU long name entry.
+ */
+public class TarOutputStream extends FilterOutputStream {
+
+   private static final int BLOCK = 512;
+   /** An 11 digit octal size field holds up to 8GB - 1. */
+   private static final long MAX_ENTRY_SIZE = 077777777777l;
+   private static final String LONG_NAME = "././@LongLink";
+   /** ustar magic and version. */
+   private static final byte[] MAGIC = { 'u', 's', 't', 'a', 'r', 0, '0', '0' };
+
+   private final byte[] padding = new byte[BLOCK];
+   private boolean finished;
+
+   public TarOutputStream(OutputStream out) {
+      super(checkNotNull(out, "out"));
+   }
+
+   /**
+    * Appends {@code file} under {@code name}, which uses {@code /} as
+    * separator.
+    */
+   public void putFile(String name, File file) throws IOException {
+      checkNotNull(name, "name");
+      checkArgument(file.isFile(), "%s is not a regular file", file);
+      checkState(!finished, "archive already finished");
+      long size = file.length();
+      checkArgument(size <= MAX_ENTRY_SIZE, "%s is too large for a tar entry", file);
+      byte[] nameBytes = name.getBytes(UTF_8);
+      int split = splitIndex(nameBytes);
+      byte[] header;
+      if (nameBytes.length <= 100) {
+         header = header(nameBytes, 0, nameBytes.length, null, 0, size, file.lastModified() / 1000, '0');
+      } else if (split > 0) {
+         header = header(nameBytes, split + 1, nameBytes.length - split - 1, nameBytes, split, size,
+               file.lastModified() / 1000, '0');
+      } else {
+         byte[] longName = Arrays.copyOf(nameBytes, nameBytes.length + 1);
+         byte[] marker = LONG_NAME.getBytes(US_ASCII);
+         out.write(header(marker, 0, marker.length, null, 0, longName.length, 0, 'L'));
+         writePadded(longName);
+         header = header(nameBytes, 0, 100, null, 0, size, file.lastModified() / 1000, '0');
+      }
+      out.write(header);
+      Files.copy(file, out);
+      pad(size);
+   }
+
+   /**
+    * Writes the end of archive marker, leaving the underlying stream open.
+    */
+   public void finish() throws IOException {
+      if (!finished) {
+         out.write(padding);
+         out.write(padding);
+         out.flush();
+         finished = true;
+      }
+   }
+
+   @Override
+   public void close() throws IOException {
+      try {
+         finish();
+      } finally {
+         out.close();
+      }
+   }
+
+   /**
+    * Index of the {@code /} at which {@code name} splits into a prefix of at
+    * most 155 bytes and a name of at most 100, or -1.
+    */
+   private static int splitIndex(byte[] name) {
+      for (int i = Math.min(155, name.length - 2); i > 0; i--) {
+         if (name[i] == '/' && name.length - i - 1 <= 100) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private static byte[] header(byte[] name, int nameOffset, int nameLength, byte[] prefix, int prefixLength,
+         long size, long mtime, char type) {
+      byte[] header = new byte[BLOCK];
+      System.arraycopy(name, nameOffset, header, 0, nameLength);
+      octal(header, 100, 8, 0644);
+      octal(header, 108, 8, 0);
+      octal(header, 116, 8, 0);
+      octal(header, 124, 12, size);
+      octal(header, 136, 12, mtime);
+      Arrays.fill(header, 148, 156, (byte) ' ');
+      header[156] = (byte) type;
+      System.arraycopy(MAGIC, 0, header, 257, MAGIC.length);
+      if (prefix != null) {
+         System.arraycopy(prefix, 0, header, 345, prefixLength);
+      }
+      long checksum = 0;
+      for (byte b : header) {
+         checksum += b & 0xff;
+      }
+      octal(header, 148, 7, checksum);
+      return header;
+   }
+
+   /** Writes {@code value} as zero padded octal, followed by a NUL. */
+   private static void octal(byte[] header, int offset, int length, long value) {
+      String digits = Long.toOctalString(value);
+      int zeros = length - 1 - digits.length();
+      checkArgument(zeros >= 0, "%s does not fit in %s octal digits", value, length - 1);
+      for (int i = 0; i < zeros; i++) {
+         header[offset + i] = '0';
+      }
+      System.arraycopy(digits.getBytes(US_ASCII), 0, header, offset + zeros, digits.length());
+      header[offset + length - 1] = 0;
+   }
+
+   private void writePadded(byte[] data) throws IOException {
+      out.write(data);
+      pad(data.length);
+   }
+
+   private void pad(long written) throws IOException {
+      int remainder = (int) (written % BLOCK);
+      if (remainder != 0) {
+         out.write(padding, 0, BLOCK - remainder);
+      }
+   }
+}
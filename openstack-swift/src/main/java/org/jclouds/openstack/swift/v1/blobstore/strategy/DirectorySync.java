@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Objects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.BaseEncoding.base16;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.prefix;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.STATIC_LARGE_OBJECT;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.io.internal.BasePayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Mirrors a local directory into a container, uploading only files which are
+ * missing remotely or whose size or MD5 differs from the listed
+ * {@link SwiftObject#etag()}. Files are hashed with memory-mapped reads, and
+ * hashing and uploading run concurrently.
+ * 
+ * Files too large for one PUT are stored as static large objects through a
+ * {@link ParallelMultipartUpload}. Remote objects created as large objects
+ * have an ETag which is not the MD5 of their content, so they are always
+ * considered changed. Their segments, named {@code <name>/slo/<millis>/...},
+ * {@code <name>/dlo/<millis>/...} or {@code <name>/resumable/<millis>/...},
+ * are never deleted as orphans. Instead, once a large object was replaced,
+ * the segments its manifest referenced under such names are deleted.
+ */
+public class DirectorySync {
+
+   /** Files are mapped and hashed in windows of this many bytes. */
+   private static final long MAP_WINDOW = 64 * 1024 * 1024;
+
+   /** Segments and sub-manifests of large objects, which have no local file. */
+   private static final Pattern SEGMENT = Pattern.compile(".+/(?:slo|dlo|resumable)/\\d+/(?:manifest/\\d+/)?\\d{8}");
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final int parallelism;
+   private final ParallelMultipartUpload multipartUpload;
+   private final Optional<ParallelBulkDelete> bulkDelete;
+
+   /**
+    * Like {@link #DirectorySync(SwiftApi, String, ListeningExecutorService, ListeningExecutorService, int, Optional)},
+    * uploading the segments of each file one after the other.
+    */
+   public DirectorySync(SwiftApi api, String regionId, ListeningExecutorService executor, int parallelism,
+         Optional<ParallelBulkDelete> bulkDelete) {
+      this(api, regionId, executor, listeningDecorator(sameThreadExecutor()), parallelism, bulkDelete);
+   }
+
+   /**
+    * Like {@link #DirectorySync(SwiftApi, String, ListeningExecutorService, int, ParallelMultipartUpload, Optional)},
+    * splitting only files larger than a single PUT allows.
+    * 
+    * @param segmentExecutor
+    *           where segments are uploaded. It must not be {@code executor},
+    *           as files wait there for their segments.
+    */
+   public DirectorySync(SwiftApi api, String regionId, ListeningExecutorService executor,
+         ListeningExecutorService segmentExecutor, int parallelism, Optional<ParallelBulkDelete> bulkDelete) {
+      this(api, regionId, executor, parallelism, new ParallelMultipartUpload(api, regionId, new BasePayloadSlicer(),
+            segmentExecutor, ParallelMultipartUpload.MAX_SEGMENT_SIZE, parallelism), bulkDelete);
+   }
+
+   /**
+    * @param multipartUpload
+    *           stores changed files, splitting those larger than its segment
+    *           size. As large objects are uploaded again on every sync, its
+    *           segment size should be as large as practical. It must not
+    *           upload segments on {@code executor}, as files wait there for
+    *           their segments.
+    * @param bulkDelete
+    *           removes remote objects without a local file; absent to keep
+    *           them.
+    */
+   public DirectorySync(SwiftApi api, String regionId, ListeningExecutorService executor, int parallelism,
+         ParallelMultipartUpload multipartUpload, Optional<ParallelBulkDelete> bulkDelete) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.parallelism = parallelism;
+      this.multipartUpload = checkNotNull(multipartUpload, "multipartUpload");
+      this.bulkDelete = checkNotNull(bulkDelete, "bulkDelete");
+   }
+
+   /**
+    * Makes the objects of {@code container} under {@code prefix} match the
+    * regular files under {@code directory}, each named {@code prefix} plus its
+    * relative path.
+    */
+   public Result execute(File directory, String container, String prefix) {
+      checkArgument(directory.isDirectory(), "%s is not a directory", directory);
+      checkNotNull(container, "container");
+      checkNotNull(prefix, "prefix");
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+
+      Map<String, SwiftObject> remote = Maps.newHashMap();
+      for (SwiftObject object : PrefetchingObjectList.create(objectApi, prefix(prefix), executor).concat()) {
+         remote.put(object.name(), object);
+      }
+
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      List<ListenableFuture<Boolean>> syncs = Lists.newArrayList();
+      try {
+         for (File file : Files.fileTreeTraverser().preOrderTraversal(directory)) {
+            if (!file.isFile()) {
+               continue;
+            }
+            String name = prefix + directory.toURI().relativize(file.toURI()).getPath();
+            syncs.add(submitter.submit(new SyncFile(container, name, file, remote.remove(name))));
+         }
+         int uploaded = 0;
+         int unchanged = 0;
+         for (Boolean changed : awaitAll(syncs)) {
+            if (changed) {
+               uploaded++;
+            } else {
+               unchanged++;
+            }
+         }
+         long deleted = 0;
+         if (bulkDelete.isPresent() && !remote.isEmpty()) {
+            List<String> orphans = Lists.newArrayListWithCapacity(remote.size());
+            for (String name : remote.keySet()) {
+               if (!SEGMENT.matcher(name).matches()) {
+                  orphans.add(container + "/" + name);
+               }
+            }
+            deleted = orphans.isEmpty() ? 0 : bulkDelete.get().execute(orphans);
+         }
+         return new Result(uploaded, unchanged, deleted);
+      } catch (RuntimeException e) {
+         for (ListenableFuture<Boolean> sync : syncs) {
+            sync.cancel(true);
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * MD5 of {@code file}, read through memory mappings instead of copies into
+    * heap buffers.
+    */
+   static byte[] md5(File file) throws IOException {
+      MessageDigest md5;
+      try {
+         md5 = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+         throw new AssertionError(e);
+      }
+      RandomAccessFile in = new RandomAccessFile(file, "r");
+      try {
+         FileChannel channel = in.getChannel();
+         long size = channel.size();
+         for (long position = 0; position < size; position += MAP_WINDOW) {
+            md5.update(channel.map(MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+         }
+         return md5.digest();
+      } finally {
+         Closeables.close(in, true);
+      }
+   }
+
+   private static String decode(String path) {
+      try {
+         return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new AssertionError(e);
+      }
+   }
+
+   /** Counts of a finished sync. */
+   public static class Result {
+      private final int uploaded;
+      private final int unchanged;
+      private final long deleted;
+
+      private Result(int uploaded, int unchanged, long deleted) {
+         this.uploaded = uploaded;
+         this.unchanged = unchanged;
+         this.deleted = deleted;
+      }
+
+      /** files which were new or changed. */
+      public int uploaded() {
+         return uploaded;
+      }
+
+      /** files which already matched their object. */
+      public int unchanged() {
+         return unchanged;
+      }
+
+      /** remote objects removed as they had no local file. */
+      public long deleted() {
+         return deleted;
+      }
+
+      @Override
+      public String toString() {
+         return toStringHelper("").add("uploaded", uploaded).add("unchanged", unchanged).add("deleted", deleted)
+               .toString();
+      }
+   }
+
+   private class SyncFile implements Callable<Boolean> {
+      private final String container;
+      private final String name;
+      private final File file;
+      private final SwiftObject remote;
+
+      private SyncFile(String container, String name, File file, SwiftObject remote) {
+         this.container = container;
+         this.name = name;
+         this.file = file;
+         this.remote = remote;
+      }
+
+      /** @return whether the file was uploaded */
+      @Override
+      public Boolean call() {
+         try {
+            byte[] md5 = null;
+            if (remote != null && sameSize()) {
+               md5 = md5(file);
+               if (base16().lowerCase().encode(md5).equalsIgnoreCase(remote.etag())) {
+                  return false;
+               }
+            }
+            Payload payload = Payloads.newFilePayload(file);
+            if (md5 != null) {
+               // lets Swift reject the upload if the file changed since we hashed it
+               payload.getContentMetadata().setContentMD5(md5);
+            }
+            Set<String> replacedSegments = remote != null ? segments() : ImmutableSet.<String> of();
+            multipartUpload.execute(container, new BlobBuilderImpl().name(name).payload(payload).build());
+            deleteQuietly(replacedSegments);
+            return true;
+         } catch (IOException e) {
+            throw propagate(e);
+         }
+      }
+
+      /**
+       * @return {@code container/object} paths of the segments the remote
+       *         object references, if it is a large object. Only segments
+       *         named after it are included, as other objects may still be
+       *         needed by something else.
+       */
+      private Set<String> segments() {
+         SwiftObject object = api.objectApiInRegionForContainer(regionId, container).head(name);
+         Set<String> segments = Sets.newLinkedHashSet();
+         if (object == null) {
+            return segments;
+         }
+         for (Map.Entry<String, String> header : object.headers().entries()) {
+            if (OBJECT_MANIFEST.equalsIgnoreCase(header.getKey())) {
+               String path = decode(header.getValue());
+               int slash = path.indexOf('/');
+               String manifestContainer = path.substring(0, slash);
+               ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, manifestContainer);
+               // listed here rather than on the executor, where this file is running
+               for (SwiftObject segment : PrefetchingObjectList.create(objectApi,
+                     prefix(path.substring(slash + 1))).concat()) {
+                  segments.add(manifestContainer + "/" + segment.name());
+               }
+            } else if (STATIC_LARGE_OBJECT.equalsIgnoreCase(header.getKey())
+                  && "true".equalsIgnoreCase(header.getValue())) {
+               readStaticManifest(container, name, segments);
+            }
+         }
+         String ownPrefix = container + "/" + name + "/";
+         for (Iterator<String> i = segments.iterator(); i.hasNext();) {
+            String path = i.next();
+            if (!path.startsWith(ownPrefix) || !SEGMENT.matcher(path).matches()) {
+               i.remove();
+            }
+         }
+         return segments;
+      }
+
+      private void readStaticManifest(String manifestContainer, String manifestName, Set<String> segments) {
+         List<Segment> listed = api.staticLargeObjectApiInRegionForContainer(regionId, manifestContainer)
+               .getManifest(manifestName);
+         if (listed == null) {
+            return;
+         }
+         for (Segment segment : listed) {
+            String path = segment.path().startsWith("/") ? segment.path().substring(1) : segment.path();
+            if (segments.add(path) && segment.subManifest()) {
+               int slash = path.indexOf('/');
+               readStaticManifest(path.substring(0, slash), path.substring(slash + 1), segments);
+            }
+         }
+      }
+
+      /**
+       * Deletes segments of the object replaced, ignoring failures, as the
+       * new object is committed already. Leftovers are found by an
+       * {@link OrphanSegmentSweeper}.
+       */
+      private void deleteQuietly(Set<String> segments) {
+         for (String path : segments) {
+            int slash = path.indexOf('/');
+            try {
+               api.objectApiInRegionForContainer(regionId, path.substring(0, slash)).delete(path.substring(slash + 1));
+            } catch (RuntimeException ignored) {
+               // an orphan at worst
+            }
+         }
+      }
+
+      private boolean sameSize() {
+         Long size = remote.payload() != null ? remote.payload().getContentMetadata().getContentLength() : null;
+         return size == null || size == file.length();
+      }
+
+      @Override
+      public String toString() {
+         return "SyncFile(" + file + " -> " + name + ")";
+      }
+   }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.features.StaticLargeObjectApi;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Commits a static large object manifest of any amount of segments. Swift caps
+ * the segments of one manifest, 1000 by default, so longer lists are split
+ * into sub-manifests, which are themselves referenced as segments, level by
+ * level until the top manifest fits. Sub-manifests of a level are uploaded
+ * concurrently.
+ *
+ * Sub-manifests are named {@code prefix} followed by
+ * {@code manifest/<level>/<index>}, next to the segments they reference.
+ */
+public class NestedManifestWriter {
+
+   /** Default {@code max_manifest_segments} of the Swift static large object middleware. */
+   public static final int DEFAULT_MAX_SEGMENTS = 1000;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final int maxSegments;
+   private final int parallelism;
+
+   public NestedManifestWriter(SwiftApi api, String regionId, ListeningExecutorService executor, int maxSegments,
+         int parallelism) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(maxSegments > 1, "maxSegments must be at least 2, but was %s", maxSegments);
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.maxSegments = maxSegments;
+      this.parallelism = parallelism;
+   }
+
+   /**
+    * Writes the manifest of {@code name}, nesting it as needed. If a
+    * sub-manifest fails, those already stored are deleted before the failure
+    * is rethrown; the segments themselves are left to the caller.
+    *
+    * @return {@link org.jclouds.openstack.swift.v1.domain.SwiftObject#etag()}
+    *         of the top manifest.
+    */
+   public String execute(String container, String name, String prefix, List<Segment> segments,
+         Map<String, String> metadata) {
+      checkNotNull(container, "container");
+      checkNotNull(name, "name");
+      checkNotNull(prefix, "prefix");
+      checkArgument(!segments.isEmpty(), "segments must not be empty");
+      StaticLargeObjectApi sloApi = api.staticLargeObjectApiInRegionForContainer(regionId, container);
+      List<String> subManifests = Lists.newArrayList();
+      try {
+         List<Segment> level = segments;
+         for (int depth = 1; level.size() > maxSegments; depth++) {
+            level = writeLevel(sloApi, container, prefix, depth, level, subManifests);
+         }
+         return sloApi.replaceManifest(name, level, metadata);
+      } catch (RuntimeException e) {
+         deleteQuietly(container, subManifests);
+         throw e;
+      }
+   }
+
+   private List<Segment> writeLevel(StaticLargeObjectApi sloApi, String container, String prefix, int depth,
+         List<Segment> level, List<String> written) {
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      List<ListenableFuture<Segment>> futures = Lists.newArrayList();
+      List<List<Segment>> groups = Lists.partition(level, maxSegments);
+      for (int i = 0; i < groups.size(); i++) {
+         String subManifest = String.format("%smanifest/%d/%08d", prefix, depth, i);
+         written.add(subManifest);
+         futures.add(submitter.submit(new WriteSubManifest(sloApi, container, subManifest, groups.get(i))));
+      }
+      try {
+         return awaitAll(futures);
+      } catch (RuntimeException e) {
+         for (ListenableFuture<Segment> future : futures) {
+            future.cancel(true);
+         }
+         throw e;
+      }
+   }
+
+   private void deleteQuietly(String container, List<String> subManifests) {
+      // a plain DELETE removes only the manifest, not what it references
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      for (String subManifest : subManifests) {
+         try {
+            objectApi.delete(subManifest);
+         } catch (RuntimeException ignored) {
+            // the caller is already failing with the original error
+         }
+      }
+   }
+
+   private static class WriteSubManifest implements Callable<Segment> {
+      private final StaticLargeObjectApi sloApi;
+      private final String container;
+      private final String name;
+      private final List<Segment> segments;
+
+      private WriteSubManifest(StaticLargeObjectApi sloApi, String container, String name, List<Segment> segments) {
+         this.sloApi = sloApi;
+         this.container = container;
+         this.name = name;
+         this.segments = segments;
+      }
+
+      @Override
+      public Segment call() {
+         String etag = sloApi.replaceManifest(name, segments, ImmutableMap.<String, String> of());
+         long size = 0;
+         for (Segment segment : segments) {
+            size += segment.sizeBytes();
+         }
+         return Segment.builder().path(String.format("/%s/%s", container, name)).etag(etag).sizeBytes(size).build();
+      }
+   }
+}
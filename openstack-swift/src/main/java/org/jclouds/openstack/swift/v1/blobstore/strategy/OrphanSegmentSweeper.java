@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.STATIC_LARGE_OBJECT;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Reclaims segments left behind by large object uploads which never
+ * committed their manifest, or whose manifest was since replaced or deleted.
+ *
+ * Only objects of the segment containers named like the segments this
+ * package writes, {@code <name>/slo/<millis>/<index>} and
+ * {@code <name>/dlo/<millis>/<index>} including nested sub-manifests, are
+ * candidates. Every other object of the manifest containers is read once:
+ * the segments listed by static large object manifests, sub-manifests
+ * included, and the {@code X-Object-Manifest} prefixes of dynamic ones are
+ * referenced, wherever they are stored. Candidates referenced by none of them
+ * are deleted through a {@link ParallelBulkDelete}, once older than the
+ * cutoff; the cutoff must leave running uploads time to commit.
+ *
+ * Segments of a {@link ResumableMultipartUpload}, named
+ * {@code <name>/resumable/<millis>/<index>}, are left alone whatever their
+ * age, as a paused upload may resume at any time after its journal was
+ * written.
+ */
+public class OrphanSegmentSweeper {
+
+   static final Pattern SEGMENT = Pattern.compile(".+/(?:slo|dlo)/\\d+/(?:manifest/\\d+/)?\\d{8}");
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final int parallelism;
+   private final ParallelBulkDelete bulkDelete;
+
+   public OrphanSegmentSweeper(SwiftApi api, String regionId, ListeningExecutorService executor, int parallelism,
+         ParallelBulkDelete bulkDelete) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.parallelism = parallelism;
+      this.bulkDelete = checkNotNull(bulkDelete, "bulkDelete");
+   }
+
+   /**
+    * Deletes the orphaned segments of {@code container}, which holds its
+    * manifests as well, last modified before {@code olderThan}.
+    *
+    * @return the amount of segments deleted
+    */
+   public long execute(String container, Date olderThan) {
+      return execute(ImmutableSet.of(container), ImmutableSet.of(container), olderThan);
+   }
+
+   /**
+    * Deletes the segments of {@code segmentContainers} last modified before
+    * {@code olderThan} which no manifest in {@code manifestContainers}
+    * references.
+    *
+    * @return the amount of segments deleted
+    */
+   public long execute(Iterable<String> segmentContainers, Iterable<String> manifestContainers, Date olderThan) {
+      List<String> orphans = find(segmentContainers, manifestContainers, olderThan);
+      return orphans.isEmpty() ? 0 : bulkDelete.execute(orphans);
+   }
+
+   /**
+    * @return {@code container/object} paths of the segments
+    *         {@link #execute(String, Date)} would delete
+    */
+   public List<String> find(String container, Date olderThan) {
+      return find(ImmutableSet.of(container), ImmutableSet.of(container), olderThan);
+   }
+
+   /**
+    * @return {@code container/object} paths of the segments
+    *         {@link #execute(Iterable, Iterable, Date)} would delete
+    */
+   public List<String> find(Iterable<String> segmentContainers, Iterable<String> manifestContainers, Date olderThan) {
+      checkNotNull(segmentContainers, "segmentContainers");
+      checkNotNull(manifestContainers, "manifestContainers");
+      checkNotNull(olderThan, "olderThan");
+      // segments are listed first, so any manifest committed by then is read
+      Set<String> stale = Sets.newLinkedHashSet();
+      for (String container : segmentContainers) {
+         for (SwiftObject object : list(container)) {
+            Date modified = object.lastModified();
+            // without a date, the segment can't be shown to be stale
+            if (SEGMENT.matcher(object.name()).matches() && modified != null && modified.before(olderThan)) {
+               stale.add(container + "/" + object.name());
+            }
+         }
+      }
+      if (stale.isEmpty()) {
+         return ImmutableList.of();
+      }
+
+      References references = new References();
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      List<ListenableFuture<Void>> reads = Lists.newArrayList();
+      try {
+         for (String container : manifestContainers) {
+            for (SwiftObject object : list(container)) {
+               // sub-manifests are read through the manifests listing them
+               if (!SEGMENT.matcher(object.name()).matches()) {
+                  reads.add(submitter.submit(new ReadReferences(references, container, object.name())));
+               }
+            }
+         }
+         awaitAll(reads);
+      } catch (RuntimeException e) {
+         for (ListenableFuture<Void> read : reads) {
+            read.cancel(true);
+         }
+         throw e;
+      }
+
+      ImmutableList.Builder<String> orphans = ImmutableList.builder();
+      for (String segment : stale) {
+         if (!references.contains(segment)) {
+            orphans.add(segment);
+         }
+      }
+      return orphans.build();
+   }
+
+   private Iterable<SwiftObject> list(String container) {
+      return PrefetchingObjectList.create(api.objectApiInRegionForContainer(regionId, container),
+            ListContainerOptions.NONE, executor).concat();
+   }
+
+   /** {@code container/object} paths referenced by the manifests read so far. */
+   private static class References {
+      private final Set<String> segments = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+      private final Set<String> prefixes = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+      private boolean contains(String path) {
+         if (segments.contains(path)) {
+            return true;
+         }
+         for (int end = path.indexOf('/') + 1; end > 0 && end <= path.length(); end++) {
+            if (prefixes.contains(path.substring(0, end))) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   /** Adds what {@code container/name} references, if it is a manifest. */
+   private class ReadReferences implements Callable<Void> {
+      private final References references;
+      private final String container;
+      private final String name;
+
+      private ReadReferences(References references, String container, String name) {
+         this.references = references;
+         this.container = container;
+         this.name = name;
+      }
+
+      @Override
+      public Void call() {
+         ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+         // deleted since listed
+         SwiftObject object = objectApi.head(name);
+         if (object == null) {
+            return null;
+         }
+         for (Map.Entry<String, String> header : object.headers().entries()) {
+            if (OBJECT_MANIFEST.equalsIgnoreCase(header.getKey())) {
+               references.prefixes.add(decode(header.getValue()));
+            } else if (STATIC_LARGE_OBJECT.equalsIgnoreCase(header.getKey())
+                  && "true".equalsIgnoreCase(header.getValue())) {
+               readStaticManifest(container, name);
+            }
+         }
+         return null;
+      }
+
+      private void readStaticManifest(String manifestContainer, String manifestName) {
+         List<Segment> segments = api.staticLargeObjectApiInRegionForContainer(regionId, manifestContainer)
+               .getManifest(manifestName);
+         if (segments == null) {
+            return;
+         }
+         for (Segment segment : segments) {
+            String path = segment.path().startsWith("/") ? segment.path().substring(1) : segment.path();
+            // manifests shared between parents are read once
+            if (references.segments.add(path) && segment.subManifest()) {
+               int slash = path.indexOf('/');
+               readStaticManifest(path.substring(0, slash), path.substring(slash + 1));
+            }
+         }
+      }
+   }
+
+   private static String decode(String path) {
+      try {
+         return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new AssertionError(e);
+      }
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.functions.ToListContainerOptions;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.BulkDeleteResponse;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.BulkApi;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Function;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Deletes objects through {@link BulkApi#bulkDelete}, instead of one request
+ * per object. Paths are grouped into batches, several of which are in flight
+ * at once. Paths reported in {@link BulkDeleteResponse#errors()} with a
+ * server error or {@code 429} status are retried with exponential backoff;
+ * any other error fails the operation.
+ */
+public class ParallelBulkDelete {
+
+   /** Swift refuses bulk deletes of more paths than this. */
+   public static final int MAX_BATCH_SIZE = 10000;
+
+   /** Delay before the first retry, doubled for each retry after it. */
+   private static final long BACKOFF_MILLIS = 100;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final int batchSize;
+   private final int parallelism;
+   private final int maxRetries;
+   private final ToListContainerOptions toListContainerOptions = new ToListContainerOptions();
+
+   public ParallelBulkDelete(SwiftApi api, String regionId, ListeningExecutorService executor, int batchSize,
+         int parallelism, int maxRetries) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(batchSize > 0 && batchSize <= MAX_BATCH_SIZE, "batchSize must be between 1 and %s, but was %s",
+            MAX_BATCH_SIZE, batchSize);
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      checkArgument(maxRetries >= 0, "maxRetries must not be negative, but was %s", maxRetries);
+      this.batchSize = batchSize;
+      this.parallelism = parallelism;
+      this.maxRetries = maxRetries;
+   }
+
+   /**
+    * Deletes every object in {@code container} which {@code options} would
+    * list. Pages are listed while earlier batches are being deleted.
+    * 
+    * @return the amount of objects deleted
+    */
+   public long clearContainer(final String container, final ListContainerOptions options) {
+      checkNotNull(container, "container");
+      checkNotNull(options, "options");
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      return execute(PrefetchingObjectList.create(objectApi, toListContainerOptions.apply(options), executor)
+            .concat().transform(new Function<SwiftObject, String>() {
+               @Override
+               public String apply(SwiftObject input) {
+                  return container + "/" + input.name();
+               }
+            }));
+   }
+
+   /**
+    * Deletes {@code paths}, each in the format {@code container/object}, or
+    * {@code container} for an empty container.
+    * 
+    * @return the amount of paths deleted
+    * @throws IllegalStateException
+    *            if some paths couldn't be deleted after retrying
+    */
+   public long execute(Iterable<String> paths) {
+      BulkApi bulkApi = api.bulkApiInRegion(regionId);
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      List<ListenableFuture<Long>> batches = Lists.newArrayList();
+      try {
+         for (Iterator<List<String>> i = Iterators.partition(paths.iterator(), batchSize); i.hasNext();) {
+            batches.add(submitter.submit(new DeleteBatch(bulkApi, ImmutableList.copyOf(i.next()))));
+         }
+         long deleted = 0;
+         for (Long count : awaitAll(batches)) {
+            deleted += count;
+         }
+         return deleted;
+      } catch (RuntimeException e) {
+         for (ListenableFuture<Long> batch : batches) {
+            batch.cancel(true);
+         }
+         throw e;
+      }
+   }
+
+   private class DeleteBatch implements Callable<Long> {
+      private final BulkApi bulkApi;
+      private final List<String> paths;
+
+      private DeleteBatch(BulkApi bulkApi, List<String> paths) {
+         this.bulkApi = bulkApi;
+         this.paths = paths;
+      }
+
+      @Override
+      public Long call() throws InterruptedException {
+         long deleted = 0;
+         List<String> remaining = paths;
+         for (int attempt = 0;; attempt++) {
+            BulkDeleteResponse response = bulkApi.bulkDelete(remaining);
+            deleted += response.deleted();
+            if (response.errors().isEmpty()) {
+               return deleted;
+            }
+            List<String> retryable = retryable(remaining, response.errors());
+            if (retryable.size() < response.errors().size() || attempt >= maxRetries) {
+               throw new IllegalStateException(String.format("could not delete %s paths after %s attempts: %s",
+                     response.errors().size(), attempt + 1, response.errors()));
+            }
+            Thread.sleep(BACKOFF_MILLIS << attempt);
+            remaining = retryable;
+         }
+      }
+   }
+
+   /**
+    * @return the requested paths whose errors are worth retrying, as they were
+    *         requested, so that they aren't encoded twice
+    */
+   private static List<String> retryable(List<String> requested, Map<String, String> errors) {
+      Map<String, String> byAbsolutePath = Maps.newHashMap();
+      for (String path : requested) {
+         byAbsolutePath.put("/" + path, path);
+      }
+      List<String> retryable = Lists.newArrayList();
+      for (Map.Entry<String, String> error : errors.entrySet()) {
+         String path = requestedPath(byAbsolutePath, error.getKey());
+         if (path != null && isRetryable(error.getValue())) {
+            retryable.add(path);
+         }
+      }
+      return retryable;
+   }
+
+   /**
+    * Errors are reported as decoded absolute paths, which may start with the
+    * {@code /v1/account} of the request.
+    */
+   private static String requestedPath(Map<String, String> byAbsolutePath, String reported) {
+      String suffix = reported.startsWith("/") ? reported : "/" + reported;
+      while (true) {
+         String path = byAbsolutePath.get(suffix);
+         if (path != null) {
+            return path;
+         }
+         int next = suffix.indexOf('/', 1);
+         if (next == -1) {
+            return null;
+         }
+         suffix = suffix.substring(next);
+      }
+   }
+
+   /** Only server errors and throttling may succeed when retried. */
+   private static boolean isRetryable(String status) {
+      try {
+         int code = Integer.parseInt(Splitter.on(' ').split(status).iterator().next());
+         return code >= 500 || code == 429;
+      } catch (NumberFormatException e) {
+         return false;
+      }
+   }
+}
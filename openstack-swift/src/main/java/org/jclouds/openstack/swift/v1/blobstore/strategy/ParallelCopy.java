@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.prefix;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Copies, and optionally moves, every object under a prefix with
+ * {@link ObjectApi#copyManifest}, which Swift performs server-side. Copies of
+ * one listing page run concurrently; once they all succeeded, the page's
+ * sources are removed through a {@link ParallelBulkDelete}, while the next
+ * page is already being listed.
+ * 
+ * Large objects are copied as manifests, which reference the segments of the
+ * source, so that objects above 5GB can be copied at all. Segments written by
+ * this provider, such as {@code <name>/slo/<millis>/<index>}, are therefore
+ * neither copied on their own nor deleted on a move, as the copied manifests
+ * still reference them.
+ */
+public class ParallelCopy {
+
+   private static final Pattern RESUMABLE_SEGMENT = Pattern.compile(".+/resumable/\\d+/\\d{8}");
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final int parallelism;
+   private final Optional<ParallelBulkDelete> bulkDelete;
+
+   /**
+    * @param bulkDelete
+    *           removes sources when moving; absent to only copy.
+    */
+   public ParallelCopy(SwiftApi api, String regionId, ListeningExecutorService executor, int parallelism,
+         Optional<ParallelBulkDelete> bulkDelete) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.parallelism = parallelism;
+      this.bulkDelete = checkNotNull(bulkDelete, "bulkDelete");
+   }
+
+   /**
+    * Copies each object of {@code sourceContainer} whose name starts with
+    * {@code prefix} to {@code destinationContainer}, under the name
+    * {@code rename} returns for it. Sources are deleted afterwards if a bulk
+    * delete was supplied.
+    * 
+    * When both containers are the same, renamed objects must not match
+    * {@code prefix}, as they would otherwise be listed and copied again.
+    * 
+    * @return the amount of objects copied, not counting segments
+    * @throws IllegalStateException
+    *            if a container doesn't exist, or an object would be copied
+    *            back under {@code prefix} of the same container
+    */
+   public long execute(final String sourceContainer, String prefix, String destinationContainer,
+         Function<String, String> rename) {
+      checkNotNull(sourceContainer, "sourceContainer");
+      checkNotNull(prefix, "prefix");
+      checkNotNull(destinationContainer, "destinationContainer");
+      checkNotNull(rename, "rename");
+      ObjectApi source = api.objectApiInRegionForContainer(regionId, sourceContainer);
+      ObjectApi destination = api.objectApiInRegionForContainer(regionId, destinationContainer);
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      long copied = 0;
+      Iterator<List<SwiftObject>> pages = Iterators.partition(
+            PrefetchingObjectList.create(source, prefix(prefix), executor).concat().iterator(),
+            PrefetchingObjectList.DEFAULT_LIMIT);
+      while (pages.hasNext()) {
+         List<ListenableFuture<String>> copies = Lists.newArrayList();
+         try {
+            // renames are checked up front, so that a page is never copied in part
+            Map<String, String> names = Maps.newLinkedHashMap();
+            for (SwiftObject object : pages.next()) {
+               if (isSegment(object.name())) {
+                  continue;
+               }
+               String name = checkNotNull(rename.apply(object.name()), "rename(%s)", object.name());
+               checkState(!sourceContainer.equals(destinationContainer) || !name.startsWith(prefix),
+                     "%s/%s would be copied to %s, which is listed under %s again", sourceContainer, object.name(),
+                     name, prefix);
+               names.put(object.name(), name);
+            }
+            for (Map.Entry<String, String> name : names.entrySet()) {
+               copies.add(submitter.submit(new CopyObject(destination, sourceContainer, name.getKey(),
+                     name.getValue())));
+            }
+            List<String> sources = awaitAll(copies);
+            copied += sources.size();
+            if (bulkDelete.isPresent()) {
+               bulkDelete.get().execute(Lists.transform(sources, new Function<String, String>() {
+                  @Override
+                  public String apply(String name) {
+                     return sourceContainer + "/" + name;
+                  }
+               }));
+            }
+         } catch (RuntimeException e) {
+            for (ListenableFuture<String> copy : copies) {
+               copy.cancel(true);
+            }
+            throw e;
+         }
+      }
+      return copied;
+   }
+
+   private static boolean isSegment(String name) {
+      return OrphanSegmentSweeper.SEGMENT.matcher(name).matches() || RESUMABLE_SEGMENT.matcher(name).matches();
+   }
+
+   private static class CopyObject implements Callable<String> {
+      private final ObjectApi destination;
+      private final String sourceContainer;
+      private final String sourceName;
+      private final String destinationName;
+
+      private CopyObject(ObjectApi destination, String sourceContainer, String sourceName, String destinationName) {
+         this.destination = destination;
+         this.sourceContainer = sourceContainer;
+         this.sourceName = sourceName;
+         this.destinationName = destinationName;
+      }
+
+      /** @return the name of the source, once copied */
+      @Override
+      public String call() {
+         checkState(destination.copyManifest(destinationName, sourceContainer, sourceName),
+               "could not copy %s/%s to %s, as a container doesn't exist", sourceContainer, sourceName,
+               destinationName);
+         return sourceName;
+      }
+
+      @Override
+      public String toString() {
+         return "CopyObject(" + sourceContainer + "/" + sourceName + " -> " + destinationName + ")";
+      }
+   }
+}
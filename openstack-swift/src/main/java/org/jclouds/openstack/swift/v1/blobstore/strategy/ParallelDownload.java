@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.Closeables.closeQuietly;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+import static org.jclouds.openstack.swift.v1.io.ContentRanges.checkRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Downloads an object with concurrent {@code Range} GETs, writing each range
+ * directly at its offset in a {@link FileChannel}. This avoids the throughput
+ * ceiling of a single connection on large objects.
+ * 
+ * Failed ranges are retried individually, with exponential backoff. Every
+ * range must report the same {@code ETag} as the initial
+ * {@link ObjectApi#head HEAD}, so an object replaced mid-download fails
+ * instead of producing a mixed file. A response which isn't the range asked
+ * for, such as the whole object, is a failed attempt and never written.
+ */
+public class ParallelDownload {
+
+   private static final int COPY_BUFFER_SIZE = 64 * 1024;
+   private static final long BACKOFF_MILLIS = 100;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+   private final long rangeSize;
+   private final int parallelism;
+   private final int maxRetries;
+
+   public ParallelDownload(SwiftApi api, String regionId, ListeningExecutorService executor, long rangeSize,
+         int parallelism, int maxRetries) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(rangeSize > 0, "rangeSize must be positive, but was %s", rangeSize);
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      checkArgument(maxRetries >= 0, "maxRetries must not be negative, but was %s", maxRetries);
+      this.rangeSize = rangeSize;
+      this.parallelism = parallelism;
+      this.maxRetries = maxRetries;
+   }
+
+   /**
+    * Downloads {@code container/name} into {@code destination}, replacing its
+    * contents.
+    * 
+    * @return the amount of bytes downloaded
+    * @throws KeyNotFoundException
+    *            if the object doesn't exist
+    */
+   public long execute(String container, String name, File destination) {
+      checkNotNull(destination, "destination");
+      try {
+         RandomAccessFile file = new RandomAccessFile(destination, "rw");
+         try {
+            return execute(container, name, file.getChannel());
+         } finally {
+            Closeables.close(file, true);
+         }
+      } catch (IOException e) {
+         throw propagate(e);
+      }
+   }
+
+   /**
+    * Downloads {@code container/name} into {@code channel}, which is truncated
+    * to the size of the object. The channel is left open.
+    * 
+    * @return the amount of bytes downloaded
+    * @throws KeyNotFoundException
+    *            if the object doesn't exist
+    */
+   public long execute(String container, String name, FileChannel channel) {
+      checkNotNull(channel, "channel");
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      SwiftObject object = objectApi.head(name);
+      if (object == null) {
+         throw new KeyNotFoundException(container, name, "download");
+      }
+      long contentLength = checkNotNull(object.payload().getContentMetadata().getContentLength(),
+            "contentLength of %s", object);
+      try {
+         channel.truncate(contentLength);
+         BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+         List<ListenableFuture<Long>> ranges = Lists.newArrayList();
+         try {
+            for (long offset = 0; offset < contentLength; offset += rangeSize) {
+               long last = Math.min(offset + rangeSize, contentLength) - 1;
+               ranges.add(submitter.submit(new DownloadRange(objectApi, container, name, object.etag(), channel, offset, last)));
+            }
+            long downloaded = 0;
+            for (Long bytes : awaitAll(ranges)) {
+               downloaded += bytes;
+            }
+            checkState(downloaded == contentLength && channel.size() == contentLength,
+                  "downloaded %s bytes of %s into a channel of size %s", downloaded, object, channel.size());
+            return downloaded;
+         } catch (RuntimeException e) {
+            for (ListenableFuture<Long> range : ranges) {
+               range.cancel(true);
+            }
+            throw e;
+         }
+      } catch (IOException e) {
+         throw propagate(e);
+      }
+   }
+
+   private class DownloadRange implements Callable<Long> {
+      private final ObjectApi objectApi;
+      private final String container;
+      private final String name;
+      private final String etag;
+      private final FileChannel channel;
+      private final long first;
+      private final long last;
+
+      private DownloadRange(ObjectApi objectApi, String container, String name, String etag, FileChannel channel,
+            long first, long last) {
+         this.objectApi = objectApi;
+         this.container = container;
+         this.name = name;
+         this.etag = etag;
+         this.channel = channel;
+         this.first = first;
+         this.last = last;
+      }
+
+      @Override
+      public Long call() throws IOException, InterruptedException {
+         for (int attempt = 0;; attempt++) {
+            try {
+               return attempt();
+            } catch (IOException e) {
+               if (attempt >= maxRetries || Thread.currentThread().isInterrupted())
+                  throw e;
+            } catch (RuntimeException e) {
+               // a changed object or a missing one will not get better on retry
+               if (attempt >= maxRetries || e instanceof IllegalStateException || e instanceof KeyNotFoundException)
+                  throw e;
+            }
+            Thread.sleep(BACKOFF_MILLIS << attempt);
+         }
+      }
+
+      private long attempt() throws IOException {
+         SwiftObject object = objectApi.get(name, new GetOptions().range(first, last));
+         if (object == null) {
+            throw new KeyNotFoundException(container, name, "range " + first + "-" + last);
+         }
+         InputStream in = object.payload().getInput();
+         try {
+            checkState(etag.equals(object.etag()), "%s changed during download: expected etag %s, but was %s", name,
+                  etag, object.etag());
+            checkRange(object, first, last);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long position = first;
+            for (int read = in.read(buffer); read != -1 && position <= last; read = in.read(buffer)) {
+               ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(read, last - position + 1));
+               while (chunk.hasRemaining()) {
+                  position += channel.write(chunk, position);
+               }
+            }
+            if (position != last + 1) {
+               throw new IOException(String.format("short read of %s range %s-%s: got %s bytes", name, first, last,
+                     position - first));
+            }
+            return position - first;
+         } finally {
+            closeQuietly(in);
+         }
+      }
+   }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.UrlEscapers.urlFragmentEscaper;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.prefix;
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Stores a blob as a <a href=
+ * "http://docs.openstack.org/api/openstack-object-storage/1.0/content/dynamic-large-object-creation.html"
+ * >Dynamic Large Object</a>. Segments are uploaded concurrently under a common
+ * prefix and the manifest is written last, so the object only appears once
+ * all of its initial segments are stored.
+ * 
+ * Since the manifest names a prefix rather than a list of segments,
+ * {@link #append} grows an existing object by uploading more segments after
+ * the last one, without rewriting anything.
+ */
+public class ParallelDynamicLargeObjectUpload {
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ParallelSegmentUpload segments;
+
+   public ParallelDynamicLargeObjectUpload(SwiftApi api, String regionId, PayloadSlicer slicer,
+         ListeningExecutorService executor, long segmentSize, int parallelism) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.segments = new ParallelSegmentUpload(api, regionId, slicer, executor, segmentSize, parallelism);
+   }
+
+   /**
+    * @return {@link SwiftObject#etag()} of the manifest.
+    */
+   public String execute(String container, Blob blob) {
+      String name = blob.getMetadata().getName();
+      Map<String, String> metadata = blob.getMetadata().getUserMetadata();
+      String prefix = String.format("%s/dlo/%d/", name, System.currentTimeMillis());
+      List<Segment> uploaded = segments.execute(container, prefix, 0, blob.getPayload());
+      try {
+         return api.dynamicLargeObjectApiInRegionForContainer(regionId, container).replaceManifest(name,
+               urlFragmentEscaper().escape(container + "/" + prefix), metadata);
+      } catch (RuntimeException e) {
+         segments.deleteQuietly(container, uploaded);
+         throw e;
+      }
+   }
+
+   /**
+    * Adds {@code payload} to the end of the dynamic large object
+    * {@code name}. Readers may see the new segments as they are stored, so
+    * concurrent downloads can observe a partial append.
+    * 
+    * @return the appended segments, in order.
+    * @throws KeyNotFoundException
+    *            if the object doesn't exist.
+    */
+   public List<Segment> append(String container, String name, Payload payload) {
+      SwiftObject manifest = api.objectApiInRegionForContainer(regionId, container).head(name);
+      if (manifest == null) {
+         throw new KeyNotFoundException(container, name, "append");
+      }
+      String segmentsPath = null;
+      for (Map.Entry<String, String> header : manifest.headers().entries()) {
+         if (OBJECT_MANIFEST.equalsIgnoreCase(header.getKey())) {
+            segmentsPath = decode(header.getValue());
+         }
+      }
+      checkArgument(segmentsPath != null && segmentsPath.indexOf('/') > 0, "%s/%s is not a dynamic large object",
+            container, name);
+      String segmentsContainer = segmentsPath.substring(0, segmentsPath.indexOf('/'));
+      String prefix = segmentsPath.substring(segmentsPath.indexOf('/') + 1);
+      return segments.execute(segmentsContainer, prefix, nextIndex(segmentsContainer, prefix), payload);
+   }
+
+   /**
+    * One past the highest numbered segment under {@code prefix}. Objects
+    * under the prefix which this class didn't name are ignored.
+    */
+   private int nextIndex(String container, String prefix) {
+      int next = 0;
+      for (SwiftObject object : PrefetchingObjectList.create(api.objectApiInRegionForContainer(regionId, container),
+            prefix(prefix)).concat()) {
+         String suffix = object.name().substring(prefix.length());
+         if (suffix.length() == 8 && suffix.matches("[0-9]+")) {
+            next = Math.max(next, Integer.parseInt(suffix) + 1);
+         }
+      }
+      return next;
+   }
+
+   private static String decode(String path) {
+      try {
+         return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new AssertionError(e);
+      }
+   }
+}
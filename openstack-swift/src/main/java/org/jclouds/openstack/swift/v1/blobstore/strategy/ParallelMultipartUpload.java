@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.io.Closeables.closeQuietly;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Stores a blob as a <a href=
+ * "http://docs.openstack.org/api/openstack-object-storage/1.0/content/static-large-objects.html"
+ * >Static Large Object</a>. The payload is split into segments, which are
+ * uploaded concurrently next to the object by a {@link ParallelSegmentUpload}
+ * and then committed with
+ * {@link org.jclouds.openstack.swift.v1.features.StaticLargeObjectApi#replaceManifest}.
+ */
+public class ParallelMultipartUpload {
+
+   /** Swift rejects static large object segments smaller than this, except the last. */
+   public static final long MIN_SEGMENT_SIZE = ParallelSegmentUpload.MIN_SEGMENT_SIZE;
+   /** Largest object a single PUT may create. */
+   public static final long MAX_SEGMENT_SIZE = ParallelSegmentUpload.MAX_SEGMENT_SIZE;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ParallelSegmentUpload segments;
+   private final NestedManifestWriter manifests;
+
+   public ParallelMultipartUpload(SwiftApi api, String regionId, PayloadSlicer slicer,
+         ListeningExecutorService executor, long segmentSize, int parallelism) {
+      this(api, regionId, slicer, executor, segmentSize, parallelism, NestedManifestWriter.DEFAULT_MAX_SEGMENTS);
+   }
+
+   /**
+    * @param maxManifestSegments
+    *           most segments Swift accepts in one manifest; objects with more
+    *           are committed through nested manifests.
+    */
+   public ParallelMultipartUpload(SwiftApi api, String regionId, PayloadSlicer slicer,
+         ListeningExecutorService executor, long segmentSize, int parallelism, int maxManifestSegments) {
+      this(api, regionId, new ParallelSegmentUpload(api, regionId, slicer, executor, segmentSize, parallelism),
+            new NestedManifestWriter(api, regionId, executor, maxManifestSegments, parallelism));
+   }
+
+   ParallelMultipartUpload(SwiftApi api, String regionId, ParallelSegmentUpload segments,
+         NestedManifestWriter manifests) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.segments = checkNotNull(segments, "segments");
+      this.manifests = checkNotNull(manifests, "manifests");
+   }
+
+   /**
+    * @return {@link org.jclouds.openstack.swift.v1.domain.SwiftObject#etag()}
+    *         of the manifest, or of the object itself when the payload fit in
+    *         one segment.
+    */
+   public String execute(String container, Blob blob) {
+      String name = blob.getMetadata().getName();
+      Map<String, String> metadata = blob.getMetadata().getUserMetadata();
+      Payload payload = blob.getPayload();
+      Long contentLength = payload.getContentMetadata().getContentLength();
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      if (contentLength != null && contentLength <= segments.segmentSize()) {
+         return objectApi.replace(name, payload, metadata);
+      }
+
+      if (!payload.isRepeatable() || contentLength == null) {
+         // peek at the first segment, as short streams don't need a manifest
+         InputStream in = payload.getInput();
+         byte[] first = segments.readSegment(in);
+         // a full buffer may be shorter than a segment, but says nothing about the rest
+         if (first.length < segments.bufferSize()) {
+            closeQuietly(in);
+            // the bytes are at hand, so let Swift check them
+            return objectApi.replace(name, copyContentType(payload, ParallelSegmentUpload.withMD5(first)), metadata);
+         }
+         payload = Payloads.newInputStreamPayload(new SequenceInputStream(new ByteArrayInputStream(first), in));
+      }
+
+      String prefix = String.format("%s/slo/%d/", name, System.currentTimeMillis());
+      List<Segment> manifest = segments.execute(container, prefix, 0, payload);
+      try {
+         return manifests.execute(container, name, prefix, manifest, metadata);
+      } catch (RuntimeException e) {
+         segments.deleteQuietly(container, manifest);
+         throw e;
+      }
+   }
+
+   private static Payload copyContentType(Payload from, Payload to) {
+      to.getContentMetadata().setContentType(from.getContentMetadata().getContentType());
+      return to;
+   }
+}
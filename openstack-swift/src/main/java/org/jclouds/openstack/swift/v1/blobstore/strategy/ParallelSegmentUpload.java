@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.Closeables.closeQuietly;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Splits a payload into segments named {@code prefix} followed by a zero
+ * padded index, and uploads them concurrently. This is the shared part of
+ * static and dynamic large object uploads, which only differ in how the
+ * segments are committed.
+ * 
+ * Repeatable payloads of known length are sliced in place. Anything else is
+ * read sequentially, so at most {@code parallelism} segments are buffered in
+ * memory at a time. Buffered segments are at most {@link #bufferSize()}
+ * bytes, and carry their MD5 so that Swift rejects them if corrupted in
+ * transit.
+ */
+public class ParallelSegmentUpload {
+
+   /** Swift rejects static large object segments smaller than this, except the last. */
+   public static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+   /** Largest object a single PUT may create. */
+   public static final long MAX_SEGMENT_SIZE = 5l * 1024 * 1024 * 1024;
+   /** Largest array the VM reliably allocates. */
+   static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+   /** Buffers for streamed segments start this small, and grow as data arrives. */
+   private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final PayloadSlicer slicer;
+   private final ListeningExecutorService executor;
+   private final long segmentSize;
+   private final int parallelism;
+   private final int bufferSize;
+
+   public ParallelSegmentUpload(SwiftApi api, String regionId, PayloadSlicer slicer,
+         ListeningExecutorService executor, long segmentSize, int parallelism) {
+      this(api, regionId, slicer, executor, segmentSize, parallelism, MAX_BUFFER_SIZE);
+   }
+
+   ParallelSegmentUpload(SwiftApi api, String regionId, PayloadSlicer slicer, ListeningExecutorService executor,
+         long segmentSize, int parallelism, int maxBufferSize) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.slicer = checkNotNull(slicer, "slicer");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(segmentSize >= MIN_SEGMENT_SIZE && segmentSize <= MAX_SEGMENT_SIZE,
+            "segmentSize must be between %s and %s bytes, but was %s", MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE,
+            segmentSize);
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.segmentSize = segmentSize;
+      this.parallelism = parallelism;
+      this.bufferSize = (int) Math.min(segmentSize, maxBufferSize);
+   }
+
+   public long segmentSize() {
+      return segmentSize;
+   }
+
+   /**
+    * @return size of the segments read from streams, which is
+    *         {@link #segmentSize()} unless that doesn't fit in an array.
+    */
+   public int bufferSize() {
+      return bufferSize;
+   }
+
+   /**
+    * Uploads {@code payload} into {@code container} as segments numbered from
+    * {@code firstIndex}. If any segment fails, those already stored are
+    * deleted before the failure is rethrown.
+    * 
+    * @return the uploaded segments, in order.
+    */
+   public List<Segment> execute(String container, String prefix, int firstIndex, Payload payload) {
+      checkNotNull(container, "container");
+      checkNotNull(prefix, "prefix");
+      checkArgument(firstIndex >= 0, "firstIndex must not be negative, but was %s", firstIndex);
+      Long contentLength = payload.getContentMetadata().getContentLength();
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      List<ListenableFuture<Segment>> segments = Lists.newArrayList();
+      try {
+         if (payload.isRepeatable() && contentLength != null) {
+            for (long offset = 0; offset < contentLength; offset += segmentSize) {
+               long size = Math.min(segmentSize, contentLength - offset);
+               segments.add(submitter.submit(new UploadSegment(objectApi, container, segmentName(prefix, firstIndex
+                     + segments.size()), slicer.slice(payload, offset, size), size)));
+            }
+         } else {
+            InputStream in = payload.getInput();
+            try {
+               for (byte[] buffer = readSegment(in); buffer.length > 0; buffer = readSegment(in)) {
+                  segments.add(submitter.submit(new UploadSegment(objectApi, container, segmentName(prefix,
+                        firstIndex + segments.size()), withMD5(buffer), buffer.length)));
+               }
+            } finally {
+               closeQuietly(in);
+            }
+         }
+         return awaitAll(segments);
+      } catch (RuntimeException e) {
+         abort(objectApi, prefix, firstIndex, segments);
+         throw e;
+      }
+   }
+
+   /**
+    * Reads up to {@link #bufferSize()} bytes from {@code in}; a shorter result
+    * means the stream is exhausted. The buffer grows with the data read, so
+    * short streams don't cost a whole segment of memory.
+    */
+   public byte[] readSegment(InputStream in) {
+      try {
+         byte[] buffer = new byte[Math.min(bufferSize, INITIAL_BUFFER_SIZE)];
+         int length = 0;
+         while (true) {
+            length += ByteStreams.read(in, buffer, length, buffer.length - length);
+            if (length < buffer.length) {
+               return Arrays.copyOf(buffer, length);
+            }
+            if (length == bufferSize) {
+               return buffer;
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min(bufferSize, 2l * buffer.length));
+         }
+      } catch (IOException e) {
+         throw propagate(e);
+      }
+   }
+
+   /**
+    * @return {@code bytes} as a payload whose MD5 Swift checks on upload
+    */
+   public static Payload withMD5(byte[] bytes) {
+      Payload payload = Payloads.newByteArrayPayload(bytes);
+      payload.getContentMetadata().setContentMD5(Hashing.md5().hashBytes(bytes).asBytes());
+      return payload;
+   }
+
+   /**
+    * Deletes {@code uploaded} segments of {@code container}, ignoring
+    * failures. Used when committing the segments did not succeed.
+    */
+   public void deleteQuietly(String container, List<Segment> uploaded) {
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      String containerPath = "/" + container + "/";
+      for (Segment segment : uploaded) {
+         try {
+            objectApi.delete(segment.path().substring(containerPath.length()));
+         } catch (RuntimeException ignored) {
+            // the caller is already failing with the original error
+         }
+      }
+   }
+
+   /**
+    * Cancels segments still in flight and removes those already stored, so
+    * that a failed upload doesn't leave orphans behind.
+    */
+   private static void abort(ObjectApi objectApi, String prefix, int firstIndex,
+         List<ListenableFuture<Segment>> segments) {
+      for (int i = 0; i < segments.size(); i++) {
+         ListenableFuture<Segment> segment = segments.get(i);
+         if (segment.cancel(true)) {
+            continue;
+         }
+         try {
+            if (segment.get() != null) {
+               objectApi.delete(segmentName(prefix, firstIndex + i));
+            }
+         } catch (Exception ignored) {
+            // either the segment failed, or we couldn't clean up after it
+         }
+      }
+   }
+
+   static String segmentName(String prefix, int index) {
+      return String.format("%s%08d", prefix, index);
+   }
+
+   static class UploadSegment implements Callable<Segment> {
+      private final ObjectApi objectApi;
+      private final String container;
+      private final String segmentName;
+      private final Payload payload;
+      private final long size;
+
+      UploadSegment(ObjectApi objectApi, String container, String segmentName, Payload payload, long size) {
+         this.objectApi = objectApi;
+         this.container = container;
+         this.segmentName = segmentName;
+         this.payload = payload;
+         this.size = size;
+      }
+
+      @Override
+      public Segment call() {
+         String etag = objectApi.replace(segmentName, payload, ImmutableMap.<String, String> of());
+         return Segment.builder().path(String.format("/%s/%s", container, segmentName)).etag(etag).sizeBytes(size)
+               .build();
+      }
+
+      @Override
+      public String toString() {
+         return "UploadSegment(" + container + "/" + segmentName + ")";
+      }
+   }
+}
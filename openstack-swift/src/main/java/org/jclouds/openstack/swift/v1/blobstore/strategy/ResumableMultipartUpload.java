@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter.awaitAll;
+import static org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelSegmentUpload.segmentName;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.prefix;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.io.Payload;
+import org.jclouds.io.PayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.BoundedSubmitter;
+import org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelSegmentUpload.UploadSegment;
+import org.jclouds.openstack.swift.v1.collect.PrefetchingObjectList;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Static large object upload that survives being interrupted. Each segment
+ * stored is appended to a local journal file; running the same upload again
+ * with the same journal checks the recorded segments against a listing of the
+ * segment prefix and only uploads those missing, before committing the
+ * manifest. The journal is deleted once the manifest is committed.
+ *
+ * A journal is only resumed from the same source: the modification time of
+ * a file payload is recorded in its header, and the MD5 of every stored
+ * segment is checked against the payload before it is reused.
+ *
+ * Unlike {@link ParallelMultipartUpload}, failed uploads leave their segments
+ * in place to be resumed. The payload must be repeatable and of known length,
+ * such as a file, so that any segment can be sent again.
+ *
+ * Segments are named {@code <name>/resumable/<millis>/<index>} rather than
+ * {@code <name>/slo/...}, so that an {@link OrphanSegmentSweeper} never
+ * deletes the segments of an upload that is paused for longer than its
+ * cutoff. Segments of an upload that is given up on must therefore be deleted
+ * by the caller, under the prefix recorded in its journal.
+ */
+public class ResumableMultipartUpload {
+
+   private static final String HEADER = "# swift resumable upload";
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final PayloadSlicer slicer;
+   private final ListeningExecutorService executor;
+   private final long segmentSize;
+   private final int parallelism;
+   private final NestedManifestWriter manifests;
+
+   public ResumableMultipartUpload(SwiftApi api, String regionId, PayloadSlicer slicer,
+         ListeningExecutorService executor, long segmentSize, int parallelism, int maxManifestSegments) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.slicer = checkNotNull(slicer, "slicer");
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(segmentSize >= ParallelSegmentUpload.MIN_SEGMENT_SIZE
+            && segmentSize <= ParallelSegmentUpload.MAX_SEGMENT_SIZE,
+            "segmentSize must be between %s and %s bytes, but was %s", ParallelSegmentUpload.MIN_SEGMENT_SIZE,
+            ParallelSegmentUpload.MAX_SEGMENT_SIZE, segmentSize);
+      checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
+      this.segmentSize = segmentSize;
+      this.parallelism = parallelism;
+      this.manifests = new NestedManifestWriter(api, regionId, executor, maxManifestSegments, parallelism);
+   }
+
+   /**
+    * Uploads {@code blob}, resuming from {@code journal} if it exists.
+    *
+    * @return {@link org.jclouds.openstack.swift.v1.domain.SwiftObject#etag()}
+    *         of the manifest.
+    * @throws IllegalArgumentException
+    *            if {@code journal} records a different upload, or the payload
+    *            changed since it was written.
+    */
+   public String execute(String container, Blob blob, File journal) {
+      checkNotNull(container, "container");
+      checkNotNull(journal, "journal");
+      String name = blob.getMetadata().getName();
+      Payload payload = blob.getPayload();
+      Long contentLength = payload.getContentMetadata().getContentLength();
+      checkArgument(payload.isRepeatable() && contentLength != null,
+            "resumable uploads need a repeatable payload of known length, such as a file");
+      String object = container + "/" + name;
+      long sourceModified = lastModified(payload);
+
+      Journal state = journal.exists() ? Journal.read(journal) : Journal.create(journal, object, String.format(
+            "%s/resumable/%d/", name, System.currentTimeMillis()), contentLength, segmentSize, sourceModified);
+      checkArgument(state.object.equals(object), "journal %s records an upload of %s, not %s", journal,
+            state.object, object);
+      checkArgument(state.contentLength == contentLength && state.segmentSize == segmentSize,
+            "journal %s records %s bytes in segments of %s, but the upload has %s bytes in segments of %s", journal,
+            state.contentLength, state.segmentSize, contentLength, segmentSize);
+      checkArgument(state.sourceModified == sourceModified,
+            "journal %s records a source last modified at %s, but it was last modified at %s", journal,
+            state.sourceModified, sourceModified);
+
+      ObjectApi objectApi = api.objectApiInRegionForContainer(regionId, container);
+      Map<Integer, Segment> stored = verify(objectApi, state, journal, payload);
+      List<Segment> segments = upload(objectApi, container, state, journal, stored, payload);
+      String etag = manifests.execute(container, name, state.prefix, segments,
+            blob.getMetadata().getUserMetadata());
+      if (!journal.delete()) {
+         journal.deleteOnExit();
+      }
+      return etag;
+   }
+
+   /**
+    * @return modification time of a file payload, or -1 if it has none
+    */
+   private static long lastModified(Payload payload) {
+      Object source = payload.getRawContent();
+      return source instanceof File ? ((File) source).lastModified() : -1;
+   }
+
+   /**
+    * @return journaled segments still stored with the same etag and size
+    * @throws IllegalArgumentException
+    *            if a stored segment differs from the same part of the payload
+    */
+   private Map<Integer, Segment> verify(ObjectApi objectApi, Journal state, File journal, Payload payload) {
+      Map<Integer, Segment> verified = Maps.newHashMap();
+      if (state.segments.isEmpty()) {
+         return verified;
+      }
+      Map<String, SwiftObject> listed = Maps.newHashMap();
+      for (SwiftObject object : PrefetchingObjectList.create(objectApi, prefix(state.prefix)).concat()) {
+         listed.put(object.name(), object);
+      }
+      for (Map.Entry<Integer, Segment> entry : state.segments.entrySet()) {
+         Segment segment = entry.getValue();
+         SwiftObject object = listed.get(segmentName(state.prefix, entry.getKey()));
+         if (object != null && segment.etag().equals(object.etag())
+               && Long.valueOf(segment.sizeBytes()).equals(object.payload().getContentMetadata().getContentLength())) {
+            String md5 = md5(slicer.slice(payload, entry.getKey() * segmentSize, segment.sizeBytes()));
+            checkArgument(md5.equalsIgnoreCase(segment.etag()),
+                  "journal %s records segment %s with etag %s, but the payload now has md5 %s there", journal,
+                  entry.getKey(), segment.etag(), md5);
+            verified.put(entry.getKey(), segment);
+         }
+      }
+      return verified;
+   }
+
+   private static String md5(Payload slice) {
+      InputStream in = null;
+      try {
+         in = slice.getInput();
+         Hasher md5 = Hashing.md5().newHasher();
+         ByteStreams.copy(in, Funnels.asOutputStream(md5));
+         return md5.hash().toString();
+      } catch (IOException e) {
+         throw propagate(e);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+   }
+
+   private List<Segment> upload(ObjectApi objectApi, String container, Journal state, File journal,
+         Map<Integer, Segment> stored, Payload payload) {
+      int count = (int) ((state.contentLength + segmentSize - 1) / segmentSize);
+      List<ListenableFuture<Segment>> segments = Lists.newArrayListWithCapacity(count);
+      BoundedSubmitter submitter = new BoundedSubmitter(executor, parallelism);
+      final JournalWriter writer = new JournalWriter(journal);
+      try {
+         for (int index = 0; index < count; index++) {
+            Segment done = stored.get(index);
+            if (done != null) {
+               segments.add(Futures.immediateFuture(done));
+               continue;
+            }
+            long offset = index * segmentSize;
+            long size = Math.min(segmentSize, state.contentLength - offset);
+            final int journaled = index;
+            ListenableFuture<Segment> segment = submitter.submit(new UploadSegment(objectApi, container, segmentName(
+                  state.prefix, index), slicer.slice(payload, offset, size), size));
+            Futures.addCallback(segment, new FutureCallback<Segment>() {
+               @Override
+               public void onSuccess(Segment result) {
+                  writer.append(journaled, result);
+               }
+
+               @Override
+               public void onFailure(Throwable t) {
+                  // awaitAll reports it
+               }
+            });
+            segments.add(segment);
+         }
+         return awaitAll(segments);
+      } catch (RuntimeException e) {
+         // stored segments stay, as the journal lets the next attempt skip them
+         for (ListenableFuture<Segment> segment : segments) {
+            segment.cancel(true);
+         }
+         throw e;
+      } finally {
+         writer.close();
+      }
+   }
+
+   /**
+    * Journal contents: a header naming the upload and its source, followed by
+    * one line per stored segment. A line cut short by a crash is ignored.
+    */
+   private static class Journal {
+      private final String object;
+      private final String prefix;
+      private final long contentLength;
+      private final long segmentSize;
+      private final long sourceModified;
+      private final Map<Integer, Segment> segments = Maps.newHashMap();
+
+      private Journal(String object, String prefix, long contentLength, long segmentSize, long sourceModified) {
+         this.object = object;
+         this.prefix = prefix;
+         this.contentLength = contentLength;
+         this.segmentSize = segmentSize;
+         this.sourceModified = sourceModified;
+      }
+
+      static Journal create(File file, String object, String prefix, long contentLength, long segmentSize,
+            long sourceModified) {
+         try {
+            Files.write(String.format("%s\n%s\t%s\t%s\t%s\t%s\n", HEADER, object, prefix, contentLength,
+                  segmentSize, sourceModified), file, UTF_8);
+         } catch (IOException e) {
+            throw propagate(e);
+         }
+         return new Journal(object, prefix, contentLength, segmentSize, sourceModified);
+      }
+
+      static Journal read(File file) {
+         List<String> lines;
+         try {
+            lines = Files.readLines(file, UTF_8);
+         } catch (IOException e) {
+            throw propagate(e);
+         }
+         checkArgument(lines.size() >= 2 && lines.get(0).equals(HEADER), "%s is not an upload journal", file);
+         List<String> header = Splitter.on('\t').splitToList(lines.get(1));
+         checkArgument(header.size() == 5, "%s is not an upload journal", file);
+         Journal journal = new Journal(header.get(0), header.get(1), Long.parseLong(header.get(2)),
+               Long.parseLong(header.get(3)), Long.parseLong(header.get(4)));
+         for (String line : lines.subList(2, lines.size())) {
+            List<String> fields = Splitter.on('\t').splitToList(line);
+            if (fields.size() != 4) {
+               continue;
+            }
+            try {
+               journal.segments.put(Integer.parseInt(fields.get(0)), Segment.builder().path(fields.get(1))
+                     .etag(fields.get(2)).sizeBytes(Long.parseLong(fields.get(3))).build());
+            } catch (NumberFormatException ignored) {
+               // partial line
+            }
+         }
+         return journal;
+      }
+   }
+
+   /**
+    * Appends segment records, forcing each to disk before the next. Records
+    * of segments finishing after {@link #close} are dropped.
+    */
+   private static class JournalWriter {
+      private final File file;
+      private FileOutputStream out;
+      private boolean closed;
+
+      private JournalWriter(File file) {
+         this.file = file;
+      }
+
+      synchronized void append(int index, Segment segment) {
+         if (closed) {
+            return;
+         }
+         try {
+            if (out == null) {
+               out = new FileOutputStream(file, true);
+            }
+            out.write(String.format("%d\t%s\t%s\t%d\n", index, segment.path(), segment.etag(), segment.sizeBytes())
+                  .getBytes(UTF_8));
+            out.flush();
+            out.getFD().sync();
+         } catch (IOException e) {
+            // losing a record only costs uploading that segment again
+         }
+      }
+
+      synchronized void close() {
+         closed = true;
+         try {
+            Closeables.close(out, true);
+         } catch (IOException impossible) {
+            throw new AssertionError(impossible);
+         }
+      }
+   }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.blobstore.internal.TarOutputStream;
+import org.jclouds.openstack.swift.v1.domain.ExtractArchiveResponse;
+import org.jclouds.openstack.swift.v1.features.BulkApi;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Uploads a local directory tree through {@link BulkApi#extractArchive}. The
+ * tar archive is written on the executor into a pipe while the request body
+ * is read from it, so the archive never touches the disk and is sent with
+ * chunked transfer encoding. Entries Swift fails to extract are then retried
+ * one by one as plain object uploads.
+ */
+public class StreamingArchiveUpload {
+
+   private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+   private final SwiftApi api;
+   private final String regionId;
+   private final ListeningExecutorService executor;
+
+   public StreamingArchiveUpload(SwiftApi api, String regionId, ListeningExecutorService executor) {
+      this.api = checkNotNull(api, "api");
+      this.regionId = checkNotNull(regionId, "regionId");
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   /**
+    * Uploads every regular file under {@code directory}, naming each after its
+    * path relative to {@code directory}.
+    * 
+    * @param path
+    *           {@code container} or {@code container/prefix} to extract under,
+    *           or empty, in which case the first directory level names the
+    *           containers.
+    * @param gzip
+    *           whether to compress the archive, trading CPU for bandwidth.
+    * @return the extract response, with {@link ExtractArchiveResponse#errors()}
+    *         reduced to the entries which also failed individually.
+    */
+   public ExtractArchiveResponse execute(String path, File directory, boolean gzip) {
+      checkNotNull(path, "path");
+      checkArgument(directory.isDirectory(), "%s is not a directory", directory);
+      Map<String, File> entries = Maps.newConcurrentMap();
+      AtomicReference<Throwable> writeFailure = new AtomicReference<Throwable>();
+      PipedInputStream in = new PipedInputStream(PIPE_BUFFER_SIZE);
+      ListenableFuture<Void> writer;
+      try {
+         writer = executor.submit(new WriteArchive(directory, path.isEmpty() ? "" : path + "/",
+               new PipedOutputStream(in), gzip, entries, writeFailure));
+      } catch (IOException e) {
+         throw propagate(e);
+      }
+      ExtractArchiveResponse response;
+      try {
+         Payload payload = Payloads.newInputStreamPayload(new FailOnWriteFailure(in, writeFailure));
+         payload.getContentMetadata().setContentType(gzip ? "application/x-gzip" : "application/x-tar");
+         response = api.bulkApiInRegion(regionId).extractArchive(path, payload, gzip ? "tar.gz" : "tar");
+      } finally {
+         // unblocks the writer if the request ended before the archive did
+         Closeables.closeQuietly(in);
+      }
+      try {
+         writer.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw propagate(e);
+      } catch (ExecutionException e) {
+         throw propagate(e.getCause());
+      }
+      return retryFailures(response, entries);
+   }
+
+   private ExtractArchiveResponse retryFailures(ExtractArchiveResponse response, Map<String, File> entries) {
+      if (response.errors().isEmpty()) {
+         return response;
+      }
+      int created = response.created();
+      ImmutableMap.Builder<String, String> errors = ImmutableMap.builder();
+      for (Map.Entry<String, String> error : response.errors().entrySet()) {
+         String objectPath = objectPath(decode(error.getKey()));
+         int slash = objectPath != null ? objectPath.indexOf('/') : -1;
+         if (slash <= 0 || !entries.containsKey(objectPath)) {
+            errors.put(error);
+            continue;
+         }
+         try {
+            api.objectApiInRegionForContainer(regionId, objectPath.substring(0, slash)).replace(
+                  objectPath.substring(slash + 1), Payloads.newFilePayload(entries.get(objectPath)),
+                  ImmutableMap.<String, String> of());
+            created++;
+         } catch (RuntimeException e) {
+            errors.put(error.getKey(), e.getMessage() != null ? e.getMessage() : error.getValue());
+         }
+      }
+      return ExtractArchiveResponse.create(created, errors.build());
+   }
+
+   /**
+    * Swift reports failures by their full object path,
+    * {@code /<version>/<account>/<container>/<name>}; returns the
+    * {@code container/name} part, which is how entries are keyed, or null if
+    * {@code failed} is no such path.
+    */
+   static String objectPath(String failed) {
+      String[] parts = failed.split("/", 4);
+      return parts.length == 4 && parts[0].isEmpty() ? parts[3] : null;
+   }
+
+   private static String decode(String path) {
+      try {
+         return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new AssertionError(e);
+      } catch (IllegalArgumentException e) {
+         return path;
+      }
+   }
+
+   private static class WriteArchive implements Callable<Void> {
+      private final File directory;
+      private final String prefix;
+      private final PipedOutputStream pipe;
+      private final boolean gzip;
+      private final Map<String, File> entries;
+      private final AtomicReference<Throwable> writeFailure;
+
+      /**
+       * @param entries
+       *           receives each written file, keyed by {@code prefix} plus
+       *           its entry name.
+       */
+      WriteArchive(File directory, String prefix, PipedOutputStream pipe, boolean gzip, Map<String, File> entries,
+            AtomicReference<Throwable> writeFailure) {
+         this.directory = directory;
+         this.prefix = prefix;
+         this.pipe = pipe;
+         this.gzip = gzip;
+         this.entries = entries;
+         this.writeFailure = writeFailure;
+      }
+
+      @Override
+      public Void call() throws IOException {
+         try {
+            OutputStream out = gzip ? new GZIPOutputStream(pipe, PIPE_BUFFER_SIZE) : pipe;
+            TarOutputStream tar = new TarOutputStream(out);
+            for (File file : Files.fileTreeTraverser().preOrderTraversal(directory)) {
+               if (!file.isFile()) {
+                  continue;
+               }
+               String name = directory.toURI().relativize(file.toURI()).getPath();
+               tar.putFile(name, file);
+               entries.put(prefix + name, file);
+               // wakes the reader, which otherwise polls the pipe once a second
+               pipe.flush();
+            }
+            tar.close();
+            return null;
+         } catch (IOException e) {
+            writeFailure.set(e);
+            throw e;
+         } catch (RuntimeException e) {
+            writeFailure.set(e);
+            throw e;
+         } finally {
+            Closeables.close(pipe, true);
+         }
+      }
+   }
+
+   /**
+    * Turns the end of the pipe into an error when the writer failed, so a
+    * truncated archive is never sent as if it were complete.
+    */
+   private static class FailOnWriteFailure extends FilterInputStream {
+      private final AtomicReference<Throwable> writeFailure;
+
+      FailOnWriteFailure(InputStream in, AtomicReference<Throwable> writeFailure) {
+         super(in);
+         this.writeFailure = writeFailure;
+      }
+
+      @Override
+      public int read() throws IOException {
+         return checkWriter(super.read());
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         return checkWriter(super.read(b, off, len));
+      }
+
+      private int checkWriter(int read) throws IOException {
+         if (read == -1 && writeFailure.get() != null) {
+            throw new IOException("error writing archive", writeFailure.get());
+         }
+         return read;
+      }
+   }
+}
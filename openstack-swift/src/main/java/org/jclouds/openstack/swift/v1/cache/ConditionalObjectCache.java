@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.BaseEncoding.base16;
+import static org.jclouds.http.options.GetOptions.Builder.ifETagDoesntMatch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jclouds.http.HttpResponseException;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.io.MutableContentMetadata;
+import org.jclouds.io.Payload;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+/**
+ * Keeps the bodies of objects read through {@link #get} in a local directory,
+ * and revalidates them with {@code If-None-Match} on each read. A
+ * {@code 304 Not Modified} is served from disk; otherwise the new body
+ * replaces the old one. The least recently used bodies are evicted once their
+ * total size exceeds {@code maxBytes}.
+ * 
+ * One instance serves one container. The directory is owned by the instance
+ * and files left in it by earlier instances are deleted.
+ */
+public class ConditionalObjectCache {
+
+   private static final String SUFFIX = ".swiftcache";
+
+   private final ObjectApi objectApi;
+   private final File directory;
+   private final long maxBytes;
+   private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+   private long totalBytes;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong loadNanos = new AtomicLong();
+   private final AtomicLong evictions = new AtomicLong();
+   private final AtomicLong bytesSaved = new AtomicLong();
+   private final AtomicLong versions = new AtomicLong();
+
+   public ConditionalObjectCache(ObjectApi objectApi, File directory, long maxBytes) {
+      this.objectApi = checkNotNull(objectApi, "objectApi");
+      this.directory = checkNotNull(directory, "directory");
+      checkArgument(maxBytes > 0, "maxBytes must be positive, but was %s", maxBytes);
+      this.maxBytes = maxBytes;
+      checkArgument(directory.isDirectory() || directory.mkdirs(), "could not create %s", directory);
+      File[] stale = directory.listFiles();
+      if (stale != null) {
+         for (File file : stale) {
+            if (file.getName().endsWith(SUFFIX)) {
+               file.delete();
+            }
+         }
+      }
+   }
+
+   /**
+    * Like {@link ObjectApi#get(String, GetOptions)}, except the payload is
+    * read from the local copy when it is still current.
+    * 
+    * @return the object, or null if it doesn't exist.
+    */
+   public SwiftObject get(String name) {
+      checkNotNull(name, "name");
+      Entry cached;
+      synchronized (entries) {
+         cached = entries.get(name);
+      }
+      long start = System.nanoTime();
+      SwiftObject object;
+      try {
+         object = objectApi.get(name, cached != null ? ifETagDoesntMatch(cached.etag) : GetOptions.NONE);
+      } catch (RuntimeException e) {
+         if (cached == null || !isNotModified(e)) {
+            throw e;
+         }
+         SwiftObject hit = open(cached);
+         if (hit != null) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(cached.size);
+            return hit;
+         }
+         // evicted in the meantime, so fetch it again
+         return get(name);
+      }
+      misses.incrementAndGet();
+      if (object == null) {
+         remove(name);
+         loadNanos.addAndGet(System.nanoTime() - start);
+         return null;
+      }
+      Long size = object.payload() != null ? object.payload().getContentMetadata().getContentLength() : null;
+      if (object.etag() == null || size == null || size > maxBytes) {
+         remove(name);
+         loadNanos.addAndGet(System.nanoTime() - start);
+         return object;
+      }
+      Entry stored = store(object, size);
+      loadNanos.addAndGet(System.nanoTime() - start);
+      SwiftObject fresh = open(stored);
+      // only null if a concurrent read already replaced or evicted it
+      return fresh != null ? fresh : get(name);
+   }
+
+   /**
+    * {@link CacheStats#hitCount()} counts reads answered with
+    * {@code 304 Not Modified}, {@link CacheStats#missCount()} those which
+    * transferred the body, or found nothing.
+    */
+   public CacheStats stats() {
+      long missCount = misses.get();
+      return new CacheStats(hits.get(), missCount, missCount, 0, loadNanos.get(), evictions.get());
+   }
+
+   /** Bytes which were served from disk instead of downloaded. */
+   public long bytesSaved() {
+      return bytesSaved.get();
+   }
+
+   /** Bytes currently kept on disk. */
+   public long totalBytes() {
+      synchronized (entries) {
+         return totalBytes;
+      }
+   }
+
+   private Entry store(SwiftObject object, long size) {
+      String fileName = base16().lowerCase().encode(
+            Hashing.sha1().hashString(object.name(), Charsets.UTF_8).asBytes())
+            + "-" + versions.incrementAndGet() + SUFFIX;
+      File file = new File(directory, fileName);
+      InputStream in = object.payload().getInput();
+      try {
+         Files.asByteSink(file).writeFrom(in);
+      } catch (IOException e) {
+         file.delete();
+         throw propagate(e);
+      } finally {
+         Closeables.closeQuietly(in);
+      }
+      Entry entry = new Entry(object, file, size);
+      synchronized (entries) {
+         Entry previous = entries.put(object.name(), entry);
+         totalBytes += size;
+         if (previous != null) {
+            totalBytes -= previous.size;
+            previous.file.delete();
+         }
+         for (Iterator<Entry> i = entries.values().iterator(); totalBytes > maxBytes && i.hasNext();) {
+            Entry eldest = i.next();
+            if (eldest == entry) {
+               continue;
+            }
+            i.remove();
+            totalBytes -= eldest.size;
+            eldest.file.delete();
+            evictions.incrementAndGet();
+         }
+      }
+      return entry;
+   }
+
+   private void remove(String name) {
+      synchronized (entries) {
+         Entry removed = entries.remove(name);
+         if (removed != null) {
+            totalBytes -= removed.size;
+            removed.file.delete();
+         }
+      }
+   }
+
+   /**
+    * Opens the body of {@code entry} while holding the lock, so that it cannot
+    * be deleted in between; an open file stays readable after deletion.
+    * 
+    * @return null if the entry is no longer current.
+    */
+   private SwiftObject open(Entry entry) {
+      InputStream in;
+      synchronized (entries) {
+         if (entries.get(entry.name) != entry) {
+            return null;
+         }
+         try {
+            in = new FileInputStream(entry.file);
+         } catch (IOException e) {
+            throw propagate(e);
+         }
+      }
+      Payload payload = Payloads.newInputStreamPayload(in);
+      MutableContentMetadata contentMetadata = payload.getContentMetadata();
+      contentMetadata.setContentLength(entry.size);
+      contentMetadata.setContentType(entry.contentType);
+      return SwiftObject.builder().name(entry.name).uri(entry.uri).etag(entry.etag)
+            .lastModified(entry.lastModified).headers(entry.headers).metadata(entry.metadata).payload(payload)
+            .build();
+   }
+
+   private static boolean isNotModified(Throwable e) {
+      for (Throwable cause : Throwables.getCausalChain(e)) {
+         if (cause instanceof HttpResponseException && ((HttpResponseException) cause).getResponse() != null
+               && ((HttpResponseException) cause).getResponse().getStatusCode() == 304) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static class Entry {
+      private final String name;
+      private final URI uri;
+      private final String etag;
+      private final Date lastModified;
+      private final Multimap<String, String> headers;
+      private final Map<String, String> metadata;
+      private final String contentType;
+      private final File file;
+      private final long size;
+
+      private Entry(SwiftObject object, File file, long size) {
+         this.name = object.name();
+         this.uri = object.uri();
+         this.etag = object.etag();
+         this.lastModified = object.lastModified();
+         this.headers = ImmutableMultimap.copyOf(object.headers());
+         this.metadata = ImmutableMap.copyOf(object.metadata());
+         this.contentType = object.payload().getContentMetadata().getContentType();
+         this.file = file;
+         this.size = size;
+      }
+   }
+}
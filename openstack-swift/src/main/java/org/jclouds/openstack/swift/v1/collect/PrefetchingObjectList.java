@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.jclouds.collect.IterableWithMarker;
+import org.jclouds.collect.IterableWithMarkers;
+import org.jclouds.collect.PagedIterable;
+import org.jclouds.openstack.swift.v1.domain.ObjectList;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+import org.jclouds.openstack.swift.v1.options.ListContainerOptions;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Lists every object in a container, following markers page by page until
+ * one comes back empty. Each page is requested as soon as the marker for it
+ * is known, so the next page is usually in flight while the current one is
+ * being consumed.
+ *
+ * A short page does not mean the listing is over: clusters may cap pages
+ * below the limit requested, and {@code subdir} entries of delimited listings
+ * are not returned as objects.
+ * 
+ * Nothing is fetched until {@link #iterator()} is called, and every iterator
+ * lists the container anew. A missing container lists as empty.
+ * 
+ * <pre>
+ * for (SwiftObject object : PrefetchingObjectList.create(objectApi, prefix(&quot;logs/&quot;), executor).concat()) {
+ *    ...
+ * }
+ * </pre>
+ */
+public class PrefetchingObjectList extends PagedIterable<SwiftObject> {
+
+   /**
+    * Default {@code container_listing_limit} of Swift, which is the most
+    * objects a page has unless the cluster is configured otherwise.
+    */
+   public static final int DEFAULT_LIMIT = 10000;
+
+   /**
+    * @param options
+    *           filters such as {@code prefix}, which are applied to every page.
+    *           Any {@code marker} is used only for the first page.
+    * @param executor
+    *           where pages are fetched ahead of the consumer.
+    */
+   public static PrefetchingObjectList create(ObjectApi objectApi, ListContainerOptions options,
+         ListeningExecutorService executor) {
+      return new PrefetchingObjectList(objectApi, options, executor);
+   }
+
+   /**
+    * Like {@link #create(ObjectApi, ListContainerOptions, ListeningExecutorService)},
+    * except pages are fetched on the consuming thread.
+    */
+   public static PrefetchingObjectList create(ObjectApi objectApi, ListContainerOptions options) {
+      return new PrefetchingObjectList(objectApi, options, listeningDecorator(sameThreadExecutor()));
+   }
+
+   private final ObjectApi objectApi;
+   private final ListContainerOptions options;
+   private final ListeningExecutorService executor;
+
+   protected PrefetchingObjectList(ObjectApi objectApi, ListContainerOptions options,
+         ListeningExecutorService executor) {
+      this.objectApi = checkNotNull(objectApi, "objectApi");
+      this.options = checkNotNull(options, "options").copy();
+      this.executor = checkNotNull(executor, "executor");
+   }
+
+   @Override
+   public Iterator<IterableWithMarker<SwiftObject>> iterator() {
+      return new Pages();
+   }
+
+   private class Pages extends AbstractIterator<IterableWithMarker<SwiftObject>> {
+      private ListenableFuture<ObjectList> next = fetch(options.copy());
+
+      @Override
+      protected IterableWithMarker<SwiftObject> computeNext() {
+         if (next == null) {
+            return endOfData();
+         }
+         ObjectList page = get(next);
+         if (page == null || page.marker() == null) {
+            next = null;
+            return endOfData();
+         }
+         // pages of subdirs only have no objects, but aren't the end
+         String marker = page.marker();
+         next = fetch(options.copy().marker(marker));
+         return IterableWithMarkers.from(page, marker);
+      }
+
+      private ListenableFuture<ObjectList> fetch(final ListContainerOptions pageOptions) {
+         return executor.submit(new Callable<ObjectList>() {
+            @Override
+            public ObjectList call() {
+               return objectApi.list(pageOptions);
+            }
+         });
+      }
+   }
+
+   private static ObjectList get(ListenableFuture<ObjectList> future) {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw propagate(e);
+      } catch (ExecutionException e) {
+         throw propagate(e.getCause());
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "PrefetchingObjectList(" + objectApi + ", " + options.buildQueryParameters() + ")";
+   }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.config;
+
+/**
+ * Configuration properties and constants used in OpenStack Swift connections.
+ */
+public final class SwiftProperties {
+
+   /**
+    * Size in bytes of each segment written by a multipart
+    * {@link org.jclouds.blobstore.BlobStore#putBlob} call. Defaults to 32MB.
+    */
+   public static final String MULTIPART_SEGMENT_SIZE = "jclouds.swift.multipart.segment-size";
+
+   /**
+    * Maximum amount of segments uploaded at the same time by a multipart
+    * {@link org.jclouds.blobstore.BlobStore#putBlob} call. Defaults to 4.
+    */
+   public static final String MULTIPART_PARALLELISM = "jclouds.swift.multipart.parallelism";
+
+   /**
+    * Size in bytes above which {@link org.jclouds.blobstore.BlobStore#putBlob}
+    * stores a blob as a static large object even without
+    * {@link org.jclouds.blobstore.options.PutOptions#multipart()}. Blobs of
+    * unknown length are streamed in a single PUT, and only segmented once
+    * they turn out longer than this. Defaults to 5GB, the most a single PUT
+    * accepts.
+    */
+   public static final String AUTO_SEGMENT_THRESHOLD = "jclouds.swift.auto-segment.threshold";
+
+   /**
+    * Most segments Swift accepts in one static large object manifest, its
+    * {@code max_manifest_segments}. Multipart uploads with more segments are
+    * committed through nested manifests. Defaults to 1000.
+    */
+   public static final String MAX_MANIFEST_SEGMENTS = "jclouds.swift.max-manifest-segments";
+
+   /**
+    * Maximum amount of paths sent in one bulk delete request when clearing
+    * or deleting containers. Defaults to 10000, the most Swift accepts.
+    */
+   public static final String BULK_DELETE_BATCH_SIZE = "jclouds.swift.bulk-delete.batch-size";
+
+   /**
+    * Maximum amount of bulk delete requests in flight when clearing or
+    * deleting containers. Defaults to 4.
+    */
+   public static final String BULK_DELETE_PARALLELISM = "jclouds.swift.bulk-delete.parallelism";
+
+   /**
+    * {@link com.google.common.cache.CacheBuilderSpec} of the container metadata
+    * cache kept by each regional blobstore. Defaults to
+    * {@code maximumSize=1000,expireAfterWrite=60s,recordStats}.
+    */
+   public static final String CONTAINER_CACHE_SPEC = "jclouds.swift.container-cache.spec";
+
+   /**
+    * Maximum amount of HEAD requests in flight while a detailed
+    * {@link org.jclouds.blobstore.BlobStore#list(String, org.jclouds.blobstore.options.ListContainerOptions)}
+    * fetches the metadata of each listed blob. Defaults to 16.
+    */
+   public static final String DETAILED_LIST_PARALLELISM = "jclouds.swift.detailed-list.parallelism";
+
+   /**
+    * Size in bytes of each ranged GET issued by read-ahead downloads.
+    * Defaults to 8MB.
+    */
+   public static final String READ_AHEAD_CHUNK_SIZE = "jclouds.swift.read-ahead.chunk-size";
+
+   /**
+    * Amount of chunks {@link org.jclouds.blobstore.BlobStore#getBlob} keeps
+    * downloading ahead of the consumer when reading a whole object larger
+    * than one chunk. Defaults to 0, which disables read-ahead.
+    */
+   public static final String READ_AHEAD_DEPTH = "jclouds.swift.read-ahead.depth";
+
+   /**
+    * Maximum amount of requests an asynchronous regional blobstore runs at the
+    * same time. Further operations queue without holding a thread. Defaults
+    * to 64.
+    */
+   public static final String ASYNC_PARALLELISM = "jclouds.swift.async.parallelism";
+
+   /**
+    * Seconds between the account HEADs that pick the fastest configured region
+    * for {@link org.jclouds.blobstore.BlobStoreContext#getBlobStore()} and
+    * {@link org.jclouds.blobstore.BlobStoreContext#getSigner()}. Defaults to
+    * 0, which keeps using the implicit region.
+    */
+   public static final String REGION_PROBE_INTERVAL = "jclouds.swift.region-probe.interval";
+
+   /**
+    * Milliseconds the region probes run in parallel for; regions that have
+    * not answered by then are skipped until the next round. Defaults to 2000.
+    */
+   public static final String REGION_PROBE_TIMEOUT = "jclouds.swift.region-probe.timeout";
+
+   /**
+    * Maximum amount of threads running operations that wait for work of their
+    * own on the {@link org.jclouds.Constants#PROPERTY_USER_THREADS user
+    * executor}, such as asynchronous blobstore calls and replicated writes.
+    * These get their own pool so that, however many are waiting, the user
+    * executor still has threads to run what they wait for. Defaults to 0,
+    * which means unbounded.
+    */
+   public static final String COORDINATOR_THREADS = "jclouds.swift.coordinator-threads";
+
+   private SwiftProperties() {
+      throw new AssertionError("intentionally unimplemented");
+   }
+}
@@ -25,21 +25,40 @@ import com.google.common.collect.ForwardingList;
 public class ObjectList extends ForwardingList<SwiftObject> {
 
    public static ObjectList create(List<SwiftObject> objects, Container container) {
-      return new ObjectList(objects, container);
+      return new ObjectList(objects, container, objects.isEmpty() ? null : objects.get(objects.size() - 1).name());
+   }
+
+   /**
+    * @param marker
+    *           see {@link #marker()}
+    */
+   public static ObjectList create(List<SwiftObject> objects, Container container, String marker) {
+      return new ObjectList(objects, container, marker);
    }
 
    private final List<SwiftObject> objects;
    private final Container container;
+   private final String marker;
 
-   protected ObjectList(List<SwiftObject> objects, Container container) {
+   protected ObjectList(List<SwiftObject> objects, Container container, String marker) {
       this.objects = checkNotNull(objects, "objects");
       this.container = checkNotNull(container, "container");
+      this.marker = marker;
    }
 
    public Container container() {
       return container;
    }
 
+   /**
+    * @return name of the last entry listed, which is where the next page
+    *         starts. This may be a {@code subdir} entry, which is not among
+    *         the objects. Null if the listing was empty.
+    */
+   public String marker() {
+      return marker;
+   }
+
    @Override
    protected List<SwiftObject> delegate() {
       return objects;
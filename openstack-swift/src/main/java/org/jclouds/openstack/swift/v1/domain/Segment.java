@@ -34,11 +34,14 @@ public class Segment {
    private final String path;
    private final String etag;
    private final long size_bytes;
+   // only ever read from manifests, never written into them
+   private final transient boolean subManifest;
 
-   private Segment(String path, String etag, long sizeBytes) {
+   private Segment(String path, String etag, long sizeBytes, boolean subManifest) {
       this.path = checkNotNull(path, "path");
       this.etag = checkNotNull(etag, "etag of %s", path);
       this.size_bytes = checkNotNull(sizeBytes, "sizeBytes of %s", path);
+      this.subManifest = subManifest;
    }
 
    /**
@@ -61,6 +64,14 @@ public class Segment {
       return size_bytes;
    }
 
+   /**
+    * Whether the segment is itself a static large object manifest, as flagged
+    * by {@code sub_slo} when a manifest is read back.
+    */
+   public boolean subManifest() {
+      return subManifest;
+   }
+
    @Override
    public boolean equals(Object object) {
       if (this == object) {
@@ -97,6 +108,7 @@ public class Segment {
       protected String path;
       protected String etag;
       protected long sizeBytes;
+      protected boolean subManifest;
 
       /**
        * @see Segment#path()
@@ -122,8 +134,16 @@ public class Segment {
          return this;
       }
 
+      /**
+       * @see Segment#subManifest()
+       */
+      public Builder subManifest(boolean subManifest) {
+         this.subManifest = subManifest;
+         return this;
+      }
+
       public Segment build() {
-         return new Segment(path, etag, sizeBytes);
+         return new Segment(path, etag, sizeBytes, subManifest);
       }
    }
 }
@@ -29,6 +29,8 @@ import org.jclouds.io.Payload;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Objects.ToStringHelper;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
@@ -41,7 +43,7 @@ import com.google.common.collect.Multimap;
 public class SwiftObject implements Comparable<SwiftObject> {
 
    private final String name;
-   private final URI uri;
+   private final Supplier<URI> uri;
    private final String etag;
    private final Date lastModified;
    private final Multimap<String, String> headers;
@@ -50,15 +52,29 @@ public class SwiftObject implements Comparable<SwiftObject> {
 
    protected SwiftObject(String name, URI uri, String etag, Date lastModified,
          Multimap<String, String> headers, Map<String, String> metadata, Payload payload) {
+      this(name, Suppliers.ofInstance(checkNotNull(uri, "uri of %s", name)), etag, lastModified, headers, metadata,
+            payload);
+   }
+
+   /**
+    * For subclasses which resolve {@link #uri()} on demand, such as objects
+    * parsed from a listing, where most callers never ask for it.
+    */
+   protected SwiftObject(String name, Supplier<URI> uri, String etag, Date lastModified,
+         Multimap<String, String> headers, Map<String, String> metadata, Payload payload) {
       this.name = checkNotNull(name, "name");
-      this.uri = checkNotNull(uri, "uri of %s", uri);
-      this.etag = checkNotNull(etag, "etag of %s", name).replace("\"", "");
+      this.uri = checkNotNull(uri, "uri of %s", name);
+      this.etag = unquote(checkNotNull(etag, "etag of %s", name));
       this.lastModified = checkNotNull(lastModified, "lastModified of %s", name);
       this.headers = headers == null ? ImmutableMultimap.<String, String> of() : checkNotNull(headers, "headers of %s", name);
       this.metadata = metadata == null ? ImmutableMap.<String, String> of() : metadata;
       this.payload = checkNotNull(payload, "payload of %s", name);
    }
 
+   private static String unquote(String etag) {
+      return etag.indexOf('"') == -1 ? etag : etag.replace("\"", "");
+   }
+
    public String name() {
       return name;
    }
@@ -68,7 +84,7 @@ public class SwiftObject implements Comparable<SwiftObject> {
     * {@link CreateContainerOptions#publicRead}.
     */
    public URI uri() {
-      return uri;
+      return uri.get();
    }
 
    /**
@@ -115,9 +131,10 @@ public class SwiftObject implements Comparable<SwiftObject> {
       }
       if (object instanceof SwiftObject) {
          final SwiftObject that = SwiftObject.class.cast(object);
+         // uri last, as listed objects only resolve it when asked
          return equal(name(), that.name()) //
-               && equal(uri(), that.uri()) //
-               && equal(etag(), that.etag());
+               && equal(etag(), that.etag()) //
+               && equal(uri(), that.uri());
       } else {
          return false;
       }
@@ -125,7 +142,7 @@ public class SwiftObject implements Comparable<SwiftObject> {
 
    @Override
    public int hashCode() {
-      return Objects.hashCode(name(), uri(), etag());
+      return Objects.hashCode(name(), etag());
    }
 
    @Override
@@ -32,14 +32,18 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 
 import org.jclouds.Fallbacks.EmptyFluentIterableOnNotFoundOr404;
+import org.jclouds.Fallbacks.EmptyPagedIterableOnNotFoundOr404;
 import org.jclouds.Fallbacks.FalseOnNotFoundOr404;
 import org.jclouds.Fallbacks.NullOnNotFoundOr404;
+import org.jclouds.collect.PagedIterable;
 import org.jclouds.javax.annotation.Nullable;
 import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindContainerMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindRemoveContainerMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.functions.ContainersToPagedIterable;
 import org.jclouds.openstack.swift.v1.functions.FalseOnAccepted;
+import org.jclouds.openstack.swift.v1.functions.ParseContainerPage;
 import org.jclouds.openstack.swift.v1.functions.ParseContainerFromHeaders;
 import org.jclouds.openstack.swift.v1.options.CreateContainerOptions;
 import org.jclouds.rest.annotations.BinderParam;
@@ -47,6 +51,7 @@ import org.jclouds.rest.annotations.Fallback;
 import org.jclouds.rest.annotations.QueryParams;
 import org.jclouds.rest.annotations.RequestFilters;
 import org.jclouds.rest.annotations.ResponseParser;
+import org.jclouds.rest.annotations.Transform;
 
 import com.google.common.collect.FluentIterable;
 
@@ -90,6 +95,58 @@ public interface ContainerApi {
    @Path("/")
    FluentIterable<Container> listAt(@QueryParam("marker") String marker);
 
+   /**
+    * Lists up to 10,000 containers whose names begin with {@code prefix},
+    * starting at {@code marker}
+    * 
+    * @param marker
+    *           lexicographic position to start list.
+    * @param prefix
+    *           beginning of the container names to list.
+    * 
+    * @return a list of existing storage containers ordered by name.
+    */
+   @Named("ListContainers")
+   @GET
+   @QueryParams(keys = "format", values = "json")
+   @Fallback(EmptyFluentIterableOnNotFoundOr404.class)
+   @Path("/")
+   FluentIterable<Container> listAtWithPrefix(@QueryParam("marker") String marker,
+         @QueryParam("prefix") String prefix);
+
+   /**
+    * Lists all containers, fetching further pages of 10,000 as the result is
+    * iterated.
+    * 
+    * @return existing storage containers ordered by name.
+    */
+   @Named("ListContainers")
+   @GET
+   @QueryParams(keys = "format", values = "json")
+   @ResponseParser(ParseContainerPage.class)
+   @Transform(ContainersToPagedIterable.class)
+   @Fallback(EmptyPagedIterableOnNotFoundOr404.class)
+   @Path("/")
+   PagedIterable<Container> list();
+
+   /**
+    * Lists all containers whose names begin with {@code prefix}, fetching
+    * further pages of 10,000 as the result is iterated.
+    * 
+    * @param prefix
+    *           beginning of the container names to list.
+    * 
+    * @return matching storage containers ordered by name.
+    */
+   @Named("ListContainers")
+   @GET
+   @QueryParams(keys = "format", values = "json")
+   @ResponseParser(ParseContainerPage.class)
+   @Transform(ContainersToPagedIterable.class)
+   @Fallback(EmptyPagedIterableOnNotFoundOr404.class)
+   @Path("/")
+   PagedIterable<Container> listWithPrefix(@QueryParam("prefix") String prefix);
+
    /**
     * Creates a container, if not already present.
     * 
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.features;
+
+import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_MANIFEST;
+
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
+import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindObjectMetadataToHeaders;
+import org.jclouds.openstack.swift.v1.functions.ETagHeader;
+import org.jclouds.rest.annotations.BinderParam;
+import org.jclouds.rest.annotations.RequestFilters;
+import org.jclouds.rest.annotations.ResponseParser;
+
+/**
+ * Dynamic large objects are served as the concatenation of every object whose
+ * name starts with a prefix, in name order. Unlike static large objects,
+ * segments can be added later without touching the manifest.
+ * 
+ * @see <a
+ *      href="http://docs.openstack.org/api/openstack-object-storage/1.0/content/dynamic-large-object-creation.html">
+ *      Dynamic Large Objects API</a>
+ */
+@RequestFilters(AuthenticateRequest.class)
+public interface DynamicLargeObjectApi {
+
+   /**
+    * Creates or updates a dynamic large object's manifest.
+    * 
+    * @param objectName
+    *           corresponds to {@link SwiftObject#name()}.
+    * @param segmentsPath
+    *           URL encoded {@code container/prefix} of the segments, which
+    *           need not exist yet.
+    * @param metadata
+    *           corresponds to {@link SwiftObject#metadata()}.
+    * 
+    * @return {@link SwiftObject#etag()} of the manifest itself.
+    */
+   @Named("CreateOrUpdateDynamicLargeObjectManifest")
+   @PUT
+   @ResponseParser(ETagHeader.class)
+   @Path("/{objectName}")
+   String replaceManifest(@PathParam("objectName") String objectName,
+         @HeaderParam(OBJECT_MANIFEST) String segmentsPath,
+         @BinderParam(BindObjectMetadataToHeaders.class) Map<String, String> metadata);
+}
@@ -231,4 +231,24 @@ public interface ObjectApi {
                 @PathParam("sourceContainer") String sourceContainer,
                 @PathParam("sourceObject") String sourceObject);
 
+   /**
+    * Copies an object like {@link #copy}, except that a static or dynamic
+    * large object manifest is copied as a manifest, referencing the same
+    * segments, instead of being concatenated into a single object. Other
+    * objects are copied as by {@link #copy}.
+    * 
+    * @return {@code true} if the object was successfully copied, false if not.
+    * 
+    * @throws CopyObjectException if the source or destination container do not exist
+    */
+   @Named("CopyObjectManifest")
+   @PUT
+   @Path("/{destinationObject}")
+   @QueryParams(keys = "multipart-manifest", values = "get")
+   @Headers(keys = OBJECT_COPY_FROM, values = "/{sourceContainer}/{sourceObject}")
+   @Fallback(FalseOnContainerNotFound.class)
+   boolean copyManifest(@PathParam("destinationObject") String destinationObject,
+                @PathParam("sourceContainer") String sourceContainer,
+                @PathParam("sourceObject") String sourceObject);
+
 }
@@ -24,15 +24,19 @@ import java.util.Map;
 import javax.inject.Named;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 
+import org.jclouds.Fallbacks.NullOnNotFoundOr404;
 import org.jclouds.Fallbacks.VoidOnNotFoundOr404;
+import org.jclouds.javax.annotation.Nullable;
 import org.jclouds.openstack.keystone.v2_0.filters.AuthenticateRequest;
 import org.jclouds.openstack.swift.v1.binders.BindMetadataToHeaders.BindObjectMetadataToHeaders;
 import org.jclouds.openstack.swift.v1.domain.Segment;
 import org.jclouds.openstack.swift.v1.functions.ETagHeader;
+import org.jclouds.openstack.swift.v1.functions.ParseManifestSegments;
 import org.jclouds.rest.annotations.BinderParam;
 import org.jclouds.rest.annotations.Fallback;
 import org.jclouds.rest.annotations.QueryParams;
@@ -71,6 +75,26 @@ public interface StaticLargeObjectApi {
          @BinderParam(BindToJsonPayload.class) List<Segment> segments,
          @BinderParam(BindObjectMetadataToHeaders.class) Map<String, String> metadata);
 
+   /**
+    * Gets the segments of a static large object's manifest. Only call this on
+    * objects known to be static large objects, as Swift returns the contents
+    * of any other object instead.
+    * 
+    * @param objectName
+    *           corresponds to {@link SwiftObject#name()}.
+    * 
+    * @return the segments referenced, in order, or null if the object doesn't
+    *         exist.
+    */
+   @Named("GetStaticLargeObjectManifest")
+   @GET
+   @ResponseParser(ParseManifestSegments.class)
+   @Fallback(NullOnNotFoundOr404.class)
+   @Path("/{objectName}")
+   @QueryParams(keys = "multipart-manifest", values = "get")
+   @Nullable
+   List<Segment> getManifest(@PathParam("objectName") String objectName);
+
    /**
     * Deletes a static large object, if present, including all of its segments.
     * 
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.jclouds.collect.IterableWithMarker;
+import org.jclouds.collect.internal.ArgsToPagedIterable;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Container;
+import org.jclouds.openstack.swift.v1.features.ContainerApi;
+import org.jclouds.rest.internal.GeneratedHttpRequest;
+
+import com.google.common.base.Function;
+
+/**
+ * Continues a container listing from the marker of its first page, keeping
+ * the region of the {@link ContainerApi} and any {@code prefix} it was called
+ * with.
+ */
+public class ContainersToPagedIterable extends ArgsToPagedIterable.FromCaller<Container, ContainersToPagedIterable> {
+
+   private final SwiftApi api;
+   private String prefix;
+
+   @Inject
+   ContainersToPagedIterable(SwiftApi api) {
+      this.api = checkNotNull(api, "api");
+   }
+
+   @Override
+   protected Function<Object, IterableWithMarker<Container>> markerToNextForArgs(List<Object> args) {
+      String regionId = String.class.cast(args.get(0));
+      return new ListContainersAt(api.containerApiInRegion(regionId), prefix);
+   }
+
+   @Override
+   public ContainersToPagedIterable setContext(HttpRequest request) {
+      List<Object> args = GeneratedHttpRequest.class.cast(request).getInvocation().getArgs();
+      this.prefix = args.isEmpty() ? null : (String) args.get(0);
+      return super.setContext(request);
+   }
+
+   private static class ListContainersAt implements Function<Object, IterableWithMarker<Container>> {
+      private final ContainerApi containerApi;
+      private final String prefix;
+
+      private ListContainersAt(ContainerApi containerApi, String prefix) {
+         this.containerApi = containerApi;
+         this.prefix = prefix;
+      }
+
+      @Override
+      public IterableWithMarker<Container> apply(Object marker) {
+         String at = marker.toString();
+         return ParseContainerPage.toPage(prefix == null ? containerApi.listAt(at).toList() : containerApi
+               .listAtWithPrefix(at, prefix).toList());
+      }
+
+      @Override
+      public String toString() {
+         return "ListContainersAt(" + prefix + ")";
+      }
+   }
+}
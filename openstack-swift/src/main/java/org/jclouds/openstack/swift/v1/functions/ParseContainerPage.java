@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.jclouds.collect.IterableWithMarker;
+import org.jclouds.collect.IterableWithMarkers;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.functions.ParseJson;
+import org.jclouds.openstack.swift.v1.domain.Container;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Parses one page of a container listing. A page is marked with the name of
+ * its last container, which is where the next page starts. Only an empty page
+ * ends the listing, as clusters may return fewer containers per page than
+ * asked for.
+ */
+public class ParseContainerPage implements Function<HttpResponse, IterableWithMarker<Container>> {
+
+   private final ParseJson<List<Container>> json;
+
+   @Inject
+   ParseContainerPage(ParseJson<List<Container>> json) {
+      this.json = json;
+   }
+
+   @Override
+   public IterableWithMarker<Container> apply(HttpResponse from) {
+      List<Container> containers = json.apply(from);
+      return toPage(containers != null ? containers : ImmutableList.<Container> of());
+   }
+
+   static IterableWithMarker<Container> toPage(List<Container> containers) {
+      if (containers.isEmpty()) {
+         return IterableWithMarkers.from(containers);
+      }
+      return IterableWithMarkers.from(containers, containers.get(containers.size() - 1).name());
+   }
+}
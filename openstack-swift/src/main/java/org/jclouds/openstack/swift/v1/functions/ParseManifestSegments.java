@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.functions;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.Closeables.closeQuietly;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.jclouds.http.HttpResponse;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Parses the response of {@code GET ?multipart-manifest=get}, which lists
+ * segments as {@code name}, {@code hash} and {@code bytes}, into
+ * {@link Segment}s. The {@code path}, {@code etag} and {@code size_bytes}
+ * spelling of {@code format=raw} is read as well, and {@code sub_slo} marks
+ * segments which are manifests themselves.
+ */
+public class ParseManifestSegments implements Function<HttpResponse, List<Segment>> {
+
+   @Override
+   public List<Segment> apply(HttpResponse from) {
+      if (from.getPayload() == null) {
+         return ImmutableList.of();
+      }
+      InputStream input = null;
+      try {
+         input = from.getPayload().getInput();
+         JsonReader reader = new JsonReader(new InputStreamReader(input, UTF_8));
+         reader.setLenient(true);
+         ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+         reader.beginArray();
+         while (reader.hasNext()) {
+            segments.add(readSegment(reader));
+         }
+         reader.endArray();
+         return segments.build();
+      } catch (IOException e) {
+         throw propagate(e);
+      } finally {
+         closeQuietly(input);
+      }
+   }
+
+   private static Segment readSegment(JsonReader reader) throws IOException {
+      Segment.Builder segment = Segment.builder();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String key = reader.nextName();
+         if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+         } else if (key.equals("name") || key.equals("path")) {
+            segment.path(reader.nextString());
+         } else if (key.equals("hash") || key.equals("etag")) {
+            segment.etag(reader.nextString());
+         } else if (key.equals("bytes") || key.equals("size_bytes")) {
+            segment.sizeBytes(reader.nextLong());
+         } else if (key.equals("sub_slo")) {
+            segment.subManifest(reader.nextBoolean());
+         } else {
+            reader.skipValue();
+         }
+      }
+      reader.endObject();
+      return segment.build();
+   }
+}
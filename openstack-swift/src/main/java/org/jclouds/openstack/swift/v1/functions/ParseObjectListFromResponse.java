@@ -16,15 +16,21 @@
  */
 package org.jclouds.openstack.swift.v1.functions;
 
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.Closeables.closeQuietly;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.Date;
-import java.util.List;
 
 import javax.inject.Inject;
 
+import org.jclouds.date.DateService;
 import org.jclouds.http.HttpRequest;
 import org.jclouds.http.HttpResponse;
-import org.jclouds.http.functions.ParseJson;
 import org.jclouds.io.Payload;
 import org.jclouds.io.Payloads;
 import org.jclouds.openstack.swift.v1.domain.Container;
@@ -34,52 +40,114 @@ import org.jclouds.rest.InvocationContext;
 import org.jclouds.rest.internal.GeneratedHttpRequest;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streams the json listing into {@link SwiftObject}s, building each exactly
+ * once. Their {@link SwiftObject#uri() uri} is only resolved when asked for.
+ */
 public class ParseObjectListFromResponse implements Function<HttpResponse, ObjectList>,
       InvocationContext<ParseObjectListFromResponse> {
 
-   private static final class InternalObject {
-      String name;
-      String hash;
-      long bytes;
-      String content_type;
-      Date last_modified;
-   }
-
-   private final ParseJson<List<InternalObject>> json;
+   private final DateService dates;
    private final ParseContainerFromHeaders parseContainer;
 
    @Inject
-   ParseObjectListFromResponse(ParseJson<List<InternalObject>> json, ParseContainerFromHeaders parseContainer) {
-      this.json = json;
+   ParseObjectListFromResponse(DateService dates, ParseContainerFromHeaders parseContainer) {
+      this.dates = dates;
       this.parseContainer = parseContainer;
    }
 
-   private ToSwiftObject toSwiftObject;
+   private String containerUri;
 
    @Override
    public ObjectList apply(HttpResponse from) {
-      List<SwiftObject> objects = Lists.transform(json.apply(from), toSwiftObject);
       Container container = parseContainer.apply(from);
-      return ObjectList.create(objects, container);
+      if (from.getPayload() == null) {
+         return ObjectList.create(ImmutableList.<SwiftObject> of(), container);
+      }
+      return parse(from.getPayload(), container);
    }
 
-   static class ToSwiftObject implements Function<InternalObject, SwiftObject> {
-      private final String containerUri;
+   private ObjectList parse(Payload payload, Container container) {
+      InputStream input = null;
+      try {
+         input = payload.getInput();
+         JsonReader reader = new JsonReader(new InputStreamReader(input, UTF_8));
+         reader.setLenient(true);
+         ImmutableList.Builder<SwiftObject> objects = ImmutableList.builder();
+         String[] marker = new String[1];
+         reader.beginArray();
+         while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+               reader.skipValue();
+               continue;
+            }
+            SwiftObject object = readObject(reader, marker);
+            if (object != null) {
+               objects.add(object);
+            }
+         }
+         reader.endArray();
+         return ObjectList.create(objects.build(), container, marker[0]);
+      } catch (IOException e) {
+         throw propagate(e);
+      } finally {
+         closeQuietly(input);
+      }
+   }
 
-      ToSwiftObject(String containerUri) {
-         this.containerUri = containerUri;
+   /**
+    * @param marker
+    *           receives the name or {@code subdir} of the entry read
+    * @return null for entries which aren't objects, such as {@code subdir}
+    *         entries returned when listing with a delimiter.
+    */
+   private SwiftObject readObject(JsonReader reader, String[] marker) throws IOException {
+      String name = null;
+      String hash = null;
+      long bytes = 0;
+      String contentType = null;
+      Date lastModified = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String key = reader.nextName();
+         if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+         } else if (key.equals("name")) {
+            name = reader.nextString();
+            marker[0] = name;
+         } else if (key.equals("subdir")) {
+            marker[0] = reader.nextString();
+         } else if (key.equals("hash")) {
+            hash = reader.nextString();
+         } else if (key.equals("bytes")) {
+            bytes = reader.nextLong();
+         } else if (key.equals("content_type")) {
+            contentType = reader.nextString();
+         } else if (key.equals("last_modified")) {
+            lastModified = parseDate(reader.nextString());
+         } else {
+            reader.skipValue();
+         }
       }
+      reader.endObject();
+      if (name == null) {
+         return null;
+      }
+      return new ListedObject(name, new ObjectUri(containerUri, name), hash, lastModified, payload(bytes,
+            contentType));
+   }
 
-      @Override
-      public SwiftObject apply(InternalObject input) {
-         return SwiftObject.builder() //
-               .uri(URI.create(String.format("%s%s", containerUri, input.name))) //
-               .name(input.name) //
-               .etag(input.hash) //
-               .payload(payload(input.bytes, input.content_type)) //
-               .lastModified(input.last_modified).build();
+   /** same fallback as {@code Iso8601DateAdapter}, which used to parse these. */
+   private Date parseDate(String date) {
+      try {
+         return dates.iso8601DateParse(date);
+      } catch (RuntimeException e) {
+         return dates.iso8601SecondsDateParse(date);
       }
    }
 
@@ -91,7 +159,7 @@ public class ParseObjectListFromResponse implements Function<HttpResponse, Objec
       if (queryIndex != -1) {
          containerUri = containerUri.substring(0, queryIndex);
       }
-      toSwiftObject = new ToSwiftObject(containerUri);
+      this.containerUri = containerUri;
       return this;
    }
 
@@ -103,4 +171,34 @@ public class ParseObjectListFromResponse implements Function<HttpResponse, Objec
       payload.getContentMetadata().setContentType(contentType);
       return payload;
    }
+
+   private static final class ListedObject extends SwiftObject {
+      private ListedObject(String name, Supplier<URI> uri, String etag, Date lastModified, Payload payload) {
+         super(name, uri, etag, lastModified, null, null, payload);
+      }
+   }
+
+   /**
+    * Defers {@link URI#create} until the uri is needed. Races only cause the
+    * same uri to be parsed twice.
+    */
+   private static final class ObjectUri implements Supplier<URI> {
+      private final String containerUri;
+      private final String name;
+      private volatile URI uri;
+
+      private ObjectUri(String containerUri, String name) {
+         this.containerUri = containerUri;
+         this.name = name;
+      }
+
+      @Override
+      public URI get() {
+         URI result = uri;
+         if (result == null) {
+            uri = result = URI.create(containerUri + name);
+         }
+         return result;
+      }
+   }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.collect.Iterables.getFirst;
+import static com.google.common.net.HttpHeaders.CONTENT_RANGE;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+
+/**
+ * Checks the {@code Content-Range} of ranged GETs. A server may ignore the
+ * {@code Range} header and answer {@code 200} with the whole object, which
+ * must not be mistaken for the bytes asked for.
+ */
+public final class ContentRanges {
+
+   private static final Pattern BYTES = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+   /**
+    * Checks that {@code object} is the partial response to a GET of the
+    * bytes {@code first-last}. The range may end early only where the object
+    * does.
+    * 
+    * @return the size of the whole object, or null if the server didn't tell
+    * @throws IOException
+    *            if the response is not that range
+    */
+   public static Long checkRange(SwiftObject object, long first, long last) throws IOException {
+      String range = getFirst(object.headers().get(CONTENT_RANGE), null);
+      Matcher matcher = BYTES.matcher(range != null ? range.trim() : "");
+      if (matcher.matches()) {
+         long actualFirst = Long.parseLong(matcher.group(1));
+         long actualLast = Long.parseLong(matcher.group(2));
+         Long size = "*".equals(matcher.group(3)) ? null : Long.valueOf(matcher.group(3));
+         boolean endsWithObject = size != null && actualLast < last && actualLast == size - 1;
+         if (actualFirst == first && (actualLast == last || endsWithObject)) {
+            return size;
+         }
+      }
+      throw new IOException(String.format("expected bytes %s-%s of %s, but got Content-Range %s", first, last,
+            object.name(), range));
+   }
+
+   private ContentRanges() {
+      throw new AssertionError("intentionally unimplemented");
+   }
+}
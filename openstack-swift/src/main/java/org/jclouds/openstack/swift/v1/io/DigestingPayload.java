@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jclouds.io.Payload;
+import org.jclouds.io.payloads.DelegatingPayload;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+
+/**
+ * Payload that computes the MD5 of its bytes while they are sent, so that a
+ * payload without a known {@link org.jclouds.io.ContentMetadata#getContentMD5()
+ * content MD5} can still be checked against the ETag Swift returns, without
+ * reading the data twice.
+ *
+ * Each stream opened starts a new digest, so retried requests are checked
+ * against what was sent last.
+ */
+public class DigestingPayload extends DelegatingPayload {
+
+   private HashingInputStream current;
+   private HashCode md5;
+
+   public DigestingPayload(Payload delegate) {
+      super(checkNotNull(delegate, "delegate"));
+   }
+
+   @Override
+   public InputStream openStream() throws IOException {
+      return digest(getDelegate().openStream());
+   }
+
+   @Override
+   public InputStream getInput() {
+      return digest(getDelegate().getInput());
+   }
+
+   private synchronized InputStream digest(InputStream in) {
+      current = new HashingInputStream(Hashing.md5(), in);
+      md5 = null;
+      return current;
+   }
+
+   /**
+    * @return MD5 of the bytes read from the last stream opened
+    * @throws IllegalStateException
+    *            if no stream was opened yet
+    */
+   public synchronized HashCode md5() {
+      checkState(current != null, "payload was not read yet");
+      if (md5 == null) {
+         md5 = current.hash();
+      }
+      return md5;
+   }
+
+   /**
+    * Fails unless {@code etag}, as returned by an upload of this payload,
+    * matches the MD5 of the bytes sent.
+    *
+    * @return {@code etag}
+    * @throws IllegalStateException
+    *            if they differ, meaning the object stored is not what was sent
+    */
+   public String checkETag(String name, String etag) {
+      String sent = md5().toString();
+      String stored = etag == null ? null : etag.replace("\"", "");
+      checkState(sent.equalsIgnoreCase(stored), "%s was corrupted in transit: sent md5 %s, but swift stored %s", name,
+            sent, etag);
+      return etag;
+   }
+}
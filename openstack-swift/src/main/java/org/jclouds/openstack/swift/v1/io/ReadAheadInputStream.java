@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.io.Closeables.closeQuietly;
+import static org.jclouds.openstack.swift.v1.io.ContentRanges.checkRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Reads an object sequentially while up to {@code depth} ranged GETs of
+ * {@code chunkSize} bytes each download the chunks after the current one. A
+ * consumer busy processing one chunk therefore finds the next already
+ * buffered, instead of waiting for a single response stream to refill.
+ * 
+ * Reads fail if the object is replaced while being read, or if a response
+ * isn't the chunk asked for.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+   private final ObjectApi objectApi;
+   private final String name;
+   private final String etag;
+   private final long size;
+   private final ListeningExecutorService executor;
+   private final int chunkSize;
+   private final int depth;
+   private final SwiftObject first;
+   private final Deque<ListenableFuture<byte[]>> inFlight = new ArrayDeque<ListenableFuture<byte[]>>();
+   private long nextOffset;
+   private byte[] current = new byte[0];
+   private int currentPosition;
+   private boolean closed;
+
+   /**
+    * @param etag
+    *           and {@code size} of the object, as returned by
+    *           {@link ObjectApi#head}.
+    */
+   public ReadAheadInputStream(ObjectApi objectApi, String name, String etag, long size,
+         ListeningExecutorService executor, int chunkSize, int depth) {
+      this.objectApi = checkNotNull(objectApi, "objectApi");
+      this.name = checkNotNull(name, "name");
+      this.etag = checkNotNull(etag, "etag");
+      checkArgument(size >= 0, "size must not be negative, but was %s", size);
+      this.size = size;
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(chunkSize > 0, "chunkSize must be positive, but was %s", chunkSize);
+      checkArgument(depth > 0, "depth must be positive, but was %s", depth);
+      this.chunkSize = chunkSize;
+      this.depth = depth;
+      this.first = null;
+      schedule();
+   }
+
+   /**
+    * Continues reading where a ranged GET from the start of the object left
+    * off, so the object needs no separate {@link ObjectApi#head}.
+    * 
+    * @param first
+    *           response to a GET of the first {@code chunkSize} bytes, whose
+    *           body becomes the first chunk
+    * @param size
+    *           of the whole object, as given by the {@code Content-Range} of
+    *           {@code first}
+    */
+   public ReadAheadInputStream(ObjectApi objectApi, SwiftObject first, long size, ListeningExecutorService executor,
+         int chunkSize, int depth) {
+      this.objectApi = checkNotNull(objectApi, "objectApi");
+      this.first = checkNotNull(first, "first");
+      this.name = first.getName();
+      this.etag = checkNotNull(first.etag(), "etag of %s", name);
+      checkArgument(size >= 0, "size must not be negative, but was %s", size);
+      this.size = size;
+      this.executor = checkNotNull(executor, "executor");
+      checkArgument(chunkSize > 0, "chunkSize must be positive, but was %s", chunkSize);
+      checkArgument(depth > 0, "depth must be positive, but was %s", depth);
+      this.chunkSize = chunkSize;
+      this.depth = depth;
+      final int length = (int) Math.min(chunkSize, size);
+      inFlight.add(executor.submit(new Callable<byte[]>() {
+         @Override
+         public byte[] call() throws IOException {
+            return readChunk(ReadAheadInputStream.this.first, 0, length);
+         }
+      }));
+      nextOffset = length;
+      schedule();
+   }
+
+   @Override
+   public int read() throws IOException {
+      if (!fill()) {
+         return -1;
+      }
+      return current[currentPosition++] & 0xff;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      checkNotNull(b, "b");
+      if (len == 0) {
+         return 0;
+      }
+      if (!fill()) {
+         return -1;
+      }
+      int read = Math.min(len, current.length - currentPosition);
+      System.arraycopy(current, currentPosition, b, off, read);
+      currentPosition += read;
+      return read;
+   }
+
+   @Override
+   public int available() {
+      return current.length - currentPosition;
+   }
+
+   @Override
+   public void close() {
+      closed = true;
+      for (ListenableFuture<byte[]> chunk : inFlight) {
+         chunk.cancel(true);
+      }
+      inFlight.clear();
+      if (first != null) {
+         // the first chunk may have been cancelled before its body was read
+         first.payload().release();
+      }
+      current = new byte[0];
+      currentPosition = 0;
+   }
+
+   /**
+    * Makes the next downloaded chunk current once the current one is used up.
+    * 
+    * @return false at the end of the object
+    */
+   private boolean fill() throws IOException {
+      if (closed) {
+         throw new IOException("stream closed");
+      }
+      while (currentPosition == current.length) {
+         ListenableFuture<byte[]> next = inFlight.poll();
+         if (next == null) {
+            return false;
+         }
+         current = await(next);
+         currentPosition = 0;
+         schedule();
+      }
+      return true;
+   }
+
+   private void schedule() {
+      while (inFlight.size() < depth && nextOffset < size) {
+         long length = Math.min(chunkSize, size - nextOffset);
+         inFlight.add(executor.submit(new FetchChunk(nextOffset, (int) length)));
+         nextOffset += length;
+      }
+   }
+
+   private byte[] await(ListenableFuture<byte[]> chunk) throws IOException {
+      try {
+         return chunk.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         close();
+         throw new InterruptedIOException("interrupted reading " + name);
+      } catch (ExecutionException e) {
+         close();
+         Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+         throw Throwables.propagate(e.getCause());
+      }
+   }
+
+   private byte[] readChunk(SwiftObject object, long offset, int length) throws IOException {
+      byte[] chunk = new byte[length];
+      InputStream in = object.payload().getInput();
+      try {
+         checkState(etag.equals(object.etag()), "%s changed while being read: expected etag %s, but was %s", name,
+               etag, object.etag());
+         checkRange(object, offset, offset + length - 1);
+         ByteStreams.readFully(in, chunk);
+      } finally {
+         closeQuietly(in);
+      }
+      return chunk;
+   }
+
+   private class FetchChunk implements Callable<byte[]> {
+      private final long offset;
+      private final int length;
+
+      private FetchChunk(long offset, int length) {
+         this.offset = offset;
+         this.length = length;
+      }
+
+      @Override
+      public byte[] call() throws IOException {
+         SwiftObject object = objectApi.get(name, new GetOptions().range(offset, offset + length - 1));
+         if (object == null) {
+            throw new IOException(String.format("%s was deleted while being read", name));
+         }
+         return readChunk(object, offset, length);
+      }
+
+      @Override
+      public String toString() {
+         return "FetchChunk(" + name + ", " + offset + "+" + length + ")";
+      }
+   }
+}
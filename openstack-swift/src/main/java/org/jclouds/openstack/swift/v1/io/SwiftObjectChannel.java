@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.io.Closeables.closeQuietly;
+import static org.jclouds.openstack.swift.v1.io.ContentRanges.checkRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jclouds.blobstore.KeyNotFoundException;
+import org.jclouds.http.options.GetOptions;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.swift.v1.features.ObjectApi;
+
+/**
+ * Random access to an object through ranged GETs. The object is read in
+ * blocks of {@code blockSize} bytes, of which the {@code maxBlocks} most
+ * recently used are kept, on or off heap. Missing blocks which are adjacent
+ * are fetched with a single request, so a footer read followed by a few
+ * column reads costs a handful of requests.
+ * 
+ * The methods mirror {@code java.nio.channels.SeekableByteChannel}, which can
+ * be declared once this module no longer targets Java 6. Reads fail with
+ * {@link IllegalStateException} if the object is replaced while open, and
+ * with {@link IOException} if a response isn't the range asked for.
+ */
+public class SwiftObjectChannel implements ReadableByteChannel {
+
+   /**
+    * @throws KeyNotFoundException
+    *            if the object doesn't exist
+    */
+   public static SwiftObjectChannel open(ObjectApi objectApi, String container, String name, int blockSize,
+         int maxBlocks, boolean direct) {
+      SwiftObject object = checkNotNull(objectApi, "objectApi").head(checkNotNull(name, "name"));
+      if (object == null) {
+         throw new KeyNotFoundException(container, name, "open");
+      }
+      long size = checkNotNull(object.payload().getContentMetadata().getContentLength(), "contentLength of %s",
+            object);
+      return new SwiftObjectChannel(objectApi, name, object.etag(), size, blockSize, maxBlocks, direct);
+   }
+
+   private final ObjectApi objectApi;
+   private final String name;
+   private final String etag;
+   private final long size;
+   private final int blockSize;
+   private final int maxBlocks;
+   private final boolean direct;
+   private final LinkedHashMap<Long, ByteBuffer> blocks;
+   /** buffers of evicted blocks, reused before allocating new ones */
+   private final Deque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+   private long position;
+   private long requests;
+   private boolean open = true;
+
+   SwiftObjectChannel(ObjectApi objectApi, String name, String etag, long size, int blockSize, int maxBlocks,
+         boolean direct) {
+      this.objectApi = objectApi;
+      this.name = name;
+      this.etag = checkNotNull(etag, "etag");
+      this.size = size;
+      checkArgument(blockSize > 0, "blockSize must be positive, but was %s", blockSize);
+      checkArgument(maxBlocks > 0, "maxBlocks must be positive, but was %s", maxBlocks);
+      this.blockSize = blockSize;
+      this.maxBlocks = maxBlocks;
+      this.direct = direct;
+      this.blocks = new LinkedHashMap<Long, ByteBuffer>(maxBlocks, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+            if (size() > SwiftObjectChannel.this.maxBlocks) {
+               free.push(eldest.getValue());
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   /**
+    * Reads from the current position, advancing it. At most
+    * {@code maxBlocks} blocks are read per call.
+    * 
+    * @return the amount of bytes read, or -1 at the end of the object
+    */
+   @Override
+   public synchronized int read(ByteBuffer dst) throws IOException {
+      ensureOpen();
+      if (position >= size) {
+         return -1;
+      }
+      long end = Math.min(size, position + dst.remaining());
+      long firstBlock = position / blockSize;
+      long lastBlock = Math.min((end - 1) / blockSize, firstBlock + maxBlocks - 1);
+      fetchMissing(firstBlock, lastBlock);
+      int read = 0;
+      for (long index = firstBlock; index <= lastBlock && dst.hasRemaining() && position < size; index++) {
+         ByteBuffer block = blocks.get(index).duplicate();
+         block.position((int) (position - index * blockSize));
+         if (block.remaining() > dst.remaining()) {
+            block.limit(block.position() + dst.remaining());
+         }
+         int length = block.remaining();
+         dst.put(block);
+         position += length;
+         read += length;
+      }
+      return read;
+   }
+
+   public synchronized long position() throws IOException {
+      ensureOpen();
+      return position;
+   }
+
+   /**
+    * Moves to {@code newPosition}; positions past the end make reads return
+    * -1.
+    */
+   public synchronized SwiftObjectChannel position(long newPosition) throws IOException {
+      checkArgument(newPosition >= 0, "position must not be negative, but was %s", newPosition);
+      ensureOpen();
+      position = newPosition;
+      return this;
+   }
+
+   public long size() throws IOException {
+      ensureOpen();
+      return size;
+   }
+
+   /** Ranged GETs issued so far. */
+   public synchronized long requestCount() {
+      return requests;
+   }
+
+   @Override
+   public synchronized boolean isOpen() {
+      return open;
+   }
+
+   @Override
+   public synchronized void close() {
+      open = false;
+      blocks.clear();
+      free.clear();
+   }
+
+   private void ensureOpen() throws ClosedChannelException {
+      if (!isOpen()) {
+         throw new ClosedChannelException();
+      }
+   }
+
+   /**
+    * Fetches each run of adjacent missing blocks between {@code first} and
+    * {@code last}, inclusive, with one request. Looking up the cached blocks
+    * of the range marks them recently used, so fetched blocks never evict
+    * them.
+    */
+   private void fetchMissing(long first, long last) throws IOException {
+      long runStart = -1;
+      for (long index = first; index <= last + 1; index++) {
+         boolean missing = index <= last && blocks.get(index) == null;
+         if (missing && runStart == -1) {
+            runStart = index;
+         } else if (!missing && runStart != -1) {
+            fetch(runStart, index - 1);
+            runStart = -1;
+         }
+      }
+   }
+
+   private void fetch(long firstBlock, long lastBlock) throws IOException {
+      long first = firstBlock * blockSize;
+      long last = Math.min(size, (lastBlock + 1) * blockSize) - 1;
+      requests++;
+      SwiftObject object = objectApi.get(name, new GetOptions().range(first, last));
+      if (object == null) {
+         throw new IOException(String.format("%s was deleted while open", name));
+      }
+      InputStream in = object.payload().getInput();
+      try {
+         checkState(etag.equals(object.etag()), "%s changed while open: expected etag %s, but was %s", name, etag,
+               object.etag());
+         // nothing is cached unless it is the range asked for
+         checkRange(object, first, last);
+         ReadableByteChannel body = Channels.newChannel(in);
+         for (long index = firstBlock; index <= lastBlock; index++) {
+            ByteBuffer block = allocate();
+            block.limit((int) Math.min(blockSize, size - index * blockSize));
+            while (block.hasRemaining()) {
+               if (body.read(block) == -1) {
+                  throw new IOException(String.format("short read of %s range %s-%s", name, first, last));
+               }
+            }
+            block.flip();
+            blocks.put(index, block);
+         }
+      } finally {
+         closeQuietly(in);
+      }
+   }
+
+   private ByteBuffer allocate() {
+      ByteBuffer reused = free.poll();
+      if (reused != null) {
+         reused.clear();
+         return reused;
+      }
+      return direct ? ByteBuffer.allocateDirect(blockSize) : ByteBuffer.allocate(blockSize);
+   }
+}
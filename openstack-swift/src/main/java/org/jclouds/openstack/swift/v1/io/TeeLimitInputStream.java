@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Copies every byte read to an {@link OutputStream}, and fails the read
+ * after {@code limit} bytes if the stream goes on. The byte which showed it
+ * does is copied as well, so the copy followed by the rest of the stream is
+ * still the whole stream.
+ * 
+ * This lets a request streaming a payload of unknown length be abandoned
+ * once the payload turns out too large, without losing what was sent. For
+ * the same reason, closing this stream once the limit was exceeded leaves the
+ * underlying stream open.
+ */
+public class TeeLimitInputStream extends FilterInputStream {
+
+   private final OutputStream copy;
+   private long remaining;
+   private boolean exceeded;
+
+   public TeeLimitInputStream(InputStream in, OutputStream copy, long limit) {
+      super(checkNotNull(in, "in"));
+      this.copy = checkNotNull(copy, "copy");
+      checkArgument(limit >= 0, "limit must not be negative, but was %s", limit);
+      this.remaining = limit;
+   }
+
+   /** Whether a read failed because the stream is longer than the limit. */
+   public synchronized boolean exceeded() {
+      return exceeded;
+   }
+
+   @Override
+   public synchronized int read() throws IOException {
+      if (remaining == 0) {
+         return checkEnd();
+      }
+      int read = in.read();
+      if (read != -1) {
+         copy.write(read);
+         remaining--;
+      }
+      return read;
+   }
+
+   @Override
+   public synchronized int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+         return 0;
+      }
+      if (remaining == 0) {
+         return checkEnd();
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read > 0) {
+         copy.write(b, off, read);
+         remaining -= read;
+      }
+      return read;
+   }
+
+   @Override
+   public long skip(long n) throws IOException {
+      // skipped bytes must be copied too
+      byte[] buffer = new byte[(int) Math.min(n, 8192)];
+      int read = n > 0 ? read(buffer, 0, buffer.length) : 0;
+      return Math.max(read, 0);
+   }
+
+   @Override
+   public boolean markSupported() {
+      return false;
+   }
+
+   @Override
+   public synchronized void mark(int readlimit) {
+   }
+
+   @Override
+   public synchronized void reset() throws IOException {
+      throw new IOException("mark/reset not supported");
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (!exceeded()) {
+         super.close();
+      }
+   }
+
+   private int checkEnd() throws IOException {
+      if (exceeded) {
+         throw new IOException("stream is longer than its limit");
+      }
+      int next = in.read();
+      if (next == -1) {
+         return -1;
+      }
+      copy.write(next);
+      exceeded = true;
+      throw new IOException("stream is longer than its limit");
+   }
+}
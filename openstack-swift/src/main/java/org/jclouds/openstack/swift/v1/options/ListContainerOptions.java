@@ -21,6 +21,8 @@ import static com.google.common.base.Preconditions.checkState;
 
 import org.jclouds.http.options.BaseHttpRequestOptions;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Options available for <a href=
  * "http://docs.openstack.org/api/openstack-object-storage/1.0/content/list-objects.html"
@@ -41,7 +43,7 @@ public class ListContainerOptions extends BaseHttpRequestOptions {
 
    /** object names greater in value than the specified marker are returned. */
    public ListContainerOptions marker(String marker) {
-      queryParameters.put("marker", checkNotNull(marker, "marker"));
+      queryParameters.replaceValues("marker", ImmutableSet.of(checkNotNull(marker, "marker")));
       return this;
    }
 
@@ -69,6 +71,16 @@ public class ListContainerOptions extends BaseHttpRequestOptions {
       return this;
    }
 
+   /**
+    * @return a copy of these options, which may be changed without affecting
+    *         this instance.
+    */
+   public ListContainerOptions copy() {
+      ListContainerOptions copy = new ListContainerOptions();
+      copy.queryParameters.putAll(queryParameters);
+      return copy;
+   }
+
    public static class Builder {
 
       /** @see ListContainerOptions#limit */
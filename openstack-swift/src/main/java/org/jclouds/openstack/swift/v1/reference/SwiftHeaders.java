@@ -45,7 +45,11 @@ public interface SwiftHeaders {
    String OBJECT_COPY_FROM = "X-Copy-From";
    String OBJECT_DELETE_AFTER = "X-Delete-After";
    String OBJECT_DELETE_AT = "X-Delete-At";
+   /** {@code container/prefix} of the segments of a dynamic large object */
+   String OBJECT_MANIFEST = "X-Object-Manifest";
    /** Get the newest version of the object for GET and HEAD requests */
    String OBJECT_NEWEST = "X-Newest";
    String OBJECT_VERSIONS_LOCATION = "X-Versions-Location";
+   /** {@code True} on the manifest of a static large object */
+   String STATIC_LARGE_OBJECT = "X-Static-Large-Object";
 }
@@ -16,12 +16,23 @@
  */
 package org.jclouds.openstack.swift.v1;
 
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.jclouds.openstack.swift.v1.features.AccountApiMockTest.accountResponse;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 
@@ -54,6 +65,68 @@ public class TemporaryUrlSignerMockTest extends BaseOpenStackMockTest<SwiftApi>
       }
    }
 
+   public void signAllMatchesSign() {
+      TemporaryUrlSigner signer = new TemporaryUrlSigner(Suppliers.ofInstance("mykey"));
+
+      List<String> signatures = signer.signAll("GET",
+            ImmutableList.of("/v1/AUTH_account/container/object", "/v1/AUTH_account/container/other"), 1323479485l);
+
+      assertEquals(signatures, ImmutableList.of("d9fc2067e52b06598421664cf6610bfc8fc431f6",
+            signer.sign("GET", "/v1/AUTH_account/container/other", 1323479485l)));
+   }
+
+   public void signUsesNewKeyAfterRotation() {
+      final AtomicReference<String> key = new AtomicReference<String>("otherkey");
+      TemporaryUrlSigner signer = new TemporaryUrlSigner(new Supplier<String>() {
+         @Override
+         public String get() {
+            return key.get();
+         }
+      });
+      String before = signer.sign("GET", "/v1/AUTH_account/container/object", 1323479485l);
+
+      key.set("mykey");
+
+      assertEquals(signer.sign("GET", "/v1/AUTH_account/container/object", 1323479485l),
+            "d9fc2067e52b06598421664cf6610bfc8fc431f6");
+      assertNotEquals(before, "d9fc2067e52b06598421664cf6610bfc8fc431f6");
+   }
+
+   public void refreshAheadKeyServesLastKeyWhenReloadFails() {
+      final AtomicLong nanos = new AtomicLong();
+      final AtomicReference<String> key = new AtomicReference<String>("mykey");
+      RefreshAheadTemporaryUrlKey refreshAhead = new RefreshAheadTemporaryUrlKey(new Supplier<String>() {
+         @Override
+         public String get() {
+            String current = key.get();
+            if (current == null) {
+               throw new IllegalStateException("account unavailable");
+            }
+            return current;
+         }
+      }, 10, sameThreadExecutor(), new Ticker() {
+         @Override
+         public long read() {
+            return nanos.get();
+         }
+      });
+      TemporaryUrlSigner signer = TemporaryUrlSigner.usingKey(refreshAhead);
+
+      assertEquals(signer.sign("GET", "/v1/AUTH_account/container/object", 1323479485l),
+            "d9fc2067e52b06598421664cf6610bfc8fc431f6");
+
+      key.set(null);
+      nanos.addAndGet(SECONDS.toNanos(11));
+      assertEquals(refreshAhead.get(), "mykey");
+
+      key.set("otherkey");
+      nanos.addAndGet(SECONDS.toNanos(11));
+      assertEquals(refreshAhead.get(), "otherkey");
+
+      assertEquals(refreshAhead.stats().loadCount(), 3);
+      assertEquals(refreshAhead.stats().loadExceptionCount(), 1);
+   }
+
    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ".*returned a null temporaryUrlKey!")
    public void whenAccountApiDoesntHaveKey() throws Exception {
       MockWebServer server = mockOpenStackServer();
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+@Test
+public class LatencyProbingRegionChooserTest {
+
+   private static final Supplier<Set<String>> REGIONS = Suppliers.<Set<String>> ofInstance(ImmutableSet.of("DFW",
+         "ORD", "SYD"));
+   private static final Supplier<String> FALLBACK = Suppliers.ofInstance("DFW");
+
+   /**
+    * Probes that take a configurable amount of time on a fake ticker, or fail
+    * when no time is configured.
+    */
+   private static class FakeProbe implements Function<String, Object> {
+      private final Map<String, Long> millis = Maps.newConcurrentMap();
+      private final FakeTicker ticker;
+
+      FakeProbe(FakeTicker ticker, Map<String, Long> millis) {
+         this.ticker = ticker;
+         this.millis.putAll(millis);
+      }
+
+      @Override
+      public Object apply(String regionId) {
+         Long elapsed = millis.get(regionId);
+         if (elapsed == null) {
+            throw new IllegalStateException(regionId + " is down");
+         }
+         ticker.advance(MILLISECONDS.toNanos(elapsed));
+         return regionId;
+      }
+   }
+
+   private static class FakeTicker extends Ticker {
+      private final AtomicLong nanos = new AtomicLong();
+
+      @Override
+      public long read() {
+         return nanos.get();
+      }
+
+      void advance(long delta) {
+         nanos.addAndGet(delta);
+      }
+   }
+
+   public void choosesFastestRegion() {
+      FakeTicker ticker = new FakeTicker();
+      FakeProbe probe = new FakeProbe(ticker, ImmutableMap.of("DFW", 80L, "ORD", 20L, "SYD", 200L));
+      LatencyProbingRegionChooser chooser = new LatencyProbingRegionChooser(probe, REGIONS, FALLBACK, 60,
+            1000, sameThreadExecutor(), ticker);
+
+      assertEquals(chooser.get(), "ORD");
+      assertEquals(chooser.latencies().get("ORD").longValue(), MILLISECONDS.toNanos(20));
+   }
+
+   public void skipsRegionsWhoseProbeFailed() {
+      FakeTicker ticker = new FakeTicker();
+      FakeProbe probe = new FakeProbe(ticker, ImmutableMap.of("DFW", 80L, "ORD", 20L, "SYD", 200L));
+      LatencyProbingRegionChooser chooser = new LatencyProbingRegionChooser(probe, REGIONS, FALLBACK, 60,
+            1000, sameThreadExecutor(), ticker);
+      assertEquals(chooser.get(), "ORD");
+
+      probe.millis.remove("ORD");
+      ticker.advance(SECONDS.toNanos(61));
+
+      // the refresh runs on the same thread, so the new choice is visible on the next call
+      chooser.get();
+      assertEquals(chooser.get(), "DFW");
+      assertEquals(chooser.latencies().keySet(), ImmutableSet.of("DFW", "SYD"));
+   }
+
+   public void fallsBackWhenEveryProbeFailed() {
+      FakeTicker ticker = new FakeTicker();
+      FakeProbe probe = new FakeProbe(ticker, ImmutableMap.<String, Long> of());
+      LatencyProbingRegionChooser chooser = new LatencyProbingRegionChooser(probe, REGIONS,
+            Suppliers.ofInstance("SYD"), 60, 1000, sameThreadExecutor(), ticker);
+
+      assertEquals(chooser.get(), "SYD");
+      assertEquals(chooser.latencies(), ImmutableMap.of());
+   }
+
+   public void probesInParallelAndSkipsRegionsThatTimeOut() throws Exception {
+      // DFW and ORD only answer once both are being probed at the same time
+      final CountDownLatch bothProbing = new CountDownLatch(2);
+      Function<String, Object> probe = new Function<String, Object>() {
+         @Override
+         public Object apply(String regionId) {
+            try {
+               if (regionId.equals("SYD")) {
+                  Thread.sleep(SECONDS.toMillis(10));
+               } else {
+                  bothProbing.countDown();
+                  bothProbing.await();
+               }
+            } catch (InterruptedException e) {
+               throw propagate(e);
+            }
+            return regionId;
+         }
+      };
+      ExecutorService executor = Executors.newCachedThreadPool();
+      try {
+         LatencyProbingRegionChooser chooser = new LatencyProbingRegionChooser(probe, REGIONS, FALLBACK, 60, 500,
+               executor, Ticker.systemTicker());
+
+         assertTrue(ImmutableSet.of("DFW", "ORD").contains(chooser.get()));
+         assertEquals(chooser.latencies().keySet(), ImmutableSet.of("DFW", "ORD"));
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+}
@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.jclouds.blobstore.options.ListContainerOptions.Builder.withDetails;
+import static org.jclouds.openstack.swift.v1.collect.PrefetchingObjectListMockTest.page;
+import static org.jclouds.openstack.swift.v1.features.AccountApiMockTest.accountResponse;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_CHUNK_SIZE;
+import static org.jclouds.openstack.swift.v1.config.SwiftProperties.READ_AHEAD_DEPTH;
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.concurrent.config.ExecutorServiceModule;
+import org.jclouds.http.HttpRequest;
+import org.jclouds.io.Payloads;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.jclouds.util.Strings2;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.inject.Module;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class RegionScopedSwiftBlobStoreMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   private static final String ACCOUNT = "/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9";
+
+   public void listReadsEveryPage() throws Exception {
+      StringBuilder fullPage = new StringBuilder("[");
+      for (int i = 0; i < 10000; i++) {
+         fullPage.append(i == 0 ? "" : ",").append(String.format("{\"name\":\"c%05d\", \"count\":0, \"bytes\":0}", i));
+      }
+      fullPage.append("]");
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(fullPage.toString())));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"name\":\"last\", \"count\":0, \"bytes\":0}]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[]")));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         PageSet<? extends StorageMetadata> containers = context.blobStoreInRegion("DFW").list();
+         assertEquals(containers.size(), 10001);
+         assertNull(containers.getNextMarker());
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "GET " + ACCOUNT + "/?format=json HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "GET " + ACCOUNT + "/?format=json&marker=c09999 HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "GET " + ACCOUNT + "/?format=json&marker=last HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void containerMetadataIsCachedAcrossCallers() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(containerResponse()));
+      server.enqueue(addCommonHeaders(objectResponse()));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         assertNotNull(context.blobStoreInRegion("DFW").blobMetadata("myContainer", "myObject"));
+         assertNotNull(context.blobStoreInRegion("DFW").blobMetadata("myContainer", "myObject"));
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void createContainerInvalidatesCachedMetadata() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(containerResponse()));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(202)));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(containerResponse()));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         BlobStore blobStore = context.blobStoreInRegion("DFW");
+         assertNotNull(blobStore.blobMetadata("myContainer", "myObject"));
+         assertFalse(blobStore.createContainerInLocation(null, "myContainer"));
+         assertNotNull(blobStore.blobMetadata("myContainer", "myObject"));
+
+         assertEquals(server.getRequestCount(), 6);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "PUT " + ACCOUNT + "/myContainer HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void detailedListLeavesOutBlobsDeletedSinceListing() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("a", "b", "c"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(404)));
+      server.enqueue(addCommonHeaders(objectResponse()));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         PageSet<? extends StorageMetadata> blobs = context.blobStoreInRegion("DFW").list("myContainer",
+               withDetails());
+
+         ImmutableList.Builder<String> names = ImmutableList.builder();
+         for (StorageMetadata blob : blobs) {
+            names.add(blob.getName());
+         }
+         assertEquals(names.build(), ImmutableList.of("a", "c"));
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertTrue(server.takeRequest().getRequestLine().startsWith("GET " + ACCOUNT + "/myContainer/?format=json"));
+         for (String name : new String[] { "a", "b", "c" }) {
+            assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer/" + name
+                  + " HTTP/1.1");
+         }
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void signersShareTheTemporaryUrlKey() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(accountResponse().addHeader("X-Account-Meta-Temp-URL-Key", "mykey")));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         HttpRequest first = context.signerInRegion("DFW").signGetBlob("myContainer", "myObject");
+         HttpRequest second = context.signerInRegion("DFW").signGetBlob("myContainer", "myObject");
+         assertEquals(second.getEndpoint().getPath(), first.getEndpoint().getPath());
+
+         // the key is looked up once, not per signer
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/ HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void readAheadStartsWithTheFirstChunk() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(chunk("0123", "bytes 0-3/10")));
+      server.enqueue(addCommonHeaders(chunk("4567", "bytes 4-7/10")));
+      server.enqueue(addCommonHeaders(chunk("89", "bytes 8-9/10")));
+      server.enqueue(addCommonHeaders(containerResponse()));
+
+      Properties overrides = new Properties();
+      overrides.setProperty(READ_AHEAD_CHUNK_SIZE, "4");
+      overrides.setProperty(READ_AHEAD_DEPTH, "2");
+      RegionScopedBlobStoreContext context = context(server, overrides);
+      try {
+         Blob blob = context.blobStoreInRegion("DFW").getBlob("myContainer", "myObject");
+         assertEquals(blob.getMetadata().getContentMetadata().getContentLength(), Long.valueOf(10));
+         assertFalse(blob.getAllHeaders().containsKey("Content-Range"));
+         assertEquals(Strings2.toStringAndClose(blob.getPayload().openStream()), "0123456789");
+
+         // no HEAD: the size comes from the first ranged GET
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         for (String range : new String[] { "bytes=0-3", "bytes=4-7", "bytes=8-9" }) {
+            RecordedRequest get = server.takeRequest();
+            assertEquals(get.getRequestLine(), "GET " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+            assertEquals(get.getHeader("Range"), range);
+         }
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void readAheadReturnsSmallObjectsFromTheFirstChunk() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(chunk("01", "bytes 0-1/2")));
+      server.enqueue(addCommonHeaders(containerResponse()));
+
+      Properties overrides = new Properties();
+      overrides.setProperty(READ_AHEAD_CHUNK_SIZE, "4");
+      overrides.setProperty(READ_AHEAD_DEPTH, "2");
+      RegionScopedBlobStoreContext context = context(server, overrides);
+      try {
+         Blob blob = context.blobStoreInRegion("DFW").getBlob("myContainer", "myObject");
+         assertEquals(Strings2.toStringAndClose(blob.getPayload().openStream()), "01");
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=0-3");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/myContainer HTTP/1.1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void readAheadTakesAnIgnoredRangeForTheWholeObject() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(containerResponse()));
+
+      Properties overrides = new Properties();
+      overrides.setProperty(READ_AHEAD_CHUNK_SIZE, "2");
+      overrides.setProperty(READ_AHEAD_DEPTH, "2");
+      RegionScopedBlobStoreContext context = context(server, overrides);
+      try {
+         Blob blob = context.blobStoreInRegion("DFW").getBlob("myContainer", "myObject");
+         assertEquals(Strings2.toStringAndClose(blob.getPayload().openStream()), "ABCD");
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=0-1");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = RuntimeException.class,
+         expectedExceptionsMessageRegExp = "java.io.IOException: expected bytes 0-3 of myObject.*")
+   public void readAheadRejectsAFirstChunkWhichIsNotTheRange() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(chunk("4567", "bytes 4-7/10")));
+
+      Properties overrides = new Properties();
+      overrides.setProperty(READ_AHEAD_CHUNK_SIZE, "4");
+      overrides.setProperty(READ_AHEAD_DEPTH, "2");
+      RegionScopedBlobStoreContext context = context(server, overrides);
+      try {
+         context.blobStoreInRegion("DFW").getBlob("myContainer", "myObject");
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void streamOfUnknownLengthUnderTheThresholdIsASinglePut() throws Exception {
+      // longer than is peeked at in memory
+      byte[] data = new byte[3 * 1024 * 1024 / 2];
+      new Random(0).nextBytes(data);
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201) //
+            .addHeader(HttpHeaders.ETAG, Hashing.md5().hashBytes(data).toString())));
+
+      RegionScopedBlobStoreContext context = context(server);
+      try {
+         BlobStore blobStore = context.blobStoreInRegion("DFW");
+         Blob blob = blobStore.blobBuilder("myObject")
+               .payload(Payloads.newInputStreamPayload(new ByteArrayInputStream(data))).build();
+
+         assertEquals(blobStore.putBlob("myContainer", blob), Hashing.md5().hashBytes(data).toString());
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         RecordedRequest put = server.takeRequest();
+         assertEquals(put.getRequestLine(), "PUT " + ACCOUNT + "/myContainer/myObject HTTP/1.1");
+         assertEquals(put.getBody(), data);
+      } finally {
+         context.close();
+         server.shutdown();
+      }
+   }
+
+   public void asyncBlobStoreLeavesTheUserExecutorToNestedWork() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"name\":\"c\", \"count\":0, \"bytes\":0}]")));
+
+      // every user thread is taken, as when each waits for segment uploads of its own
+      CountDownLatch release = new CountDownLatch(1);
+      ListeningExecutorService userExecutor = busyExecutor(release);
+      RegionScopedBlobStoreContext context = ContextBuilder.newBuilder("openstack-swift") //
+            .credentials("jclouds:joe", "letmein") //
+            .endpoint(server.getUrl("/").toString()) //
+            .modules(ImmutableSet.<Module> of(new ExecutorServiceModule(userExecutor, sameThreadExecutor()))) //
+            .build(RegionScopedBlobStoreContext.class);
+      try {
+         assertEquals(context.asyncBlobStoreInRegion("DFW").list().get(10, SECONDS).size(), 1);
+      } finally {
+         release.countDown();
+         context.close();
+         userExecutor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   public void replicatedBlobStoreLeavesTheUserExecutorToNestedWork() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"name\":\"c\", \"count\":0, \"bytes\":0}]")));
+
+      // every user thread is taken, as when each waits for segment uploads of its own
+      CountDownLatch release = new CountDownLatch(1);
+      ListeningExecutorService userExecutor = busyExecutor(release);
+      RegionScopedBlobStoreContext context = ContextBuilder.newBuilder("openstack-swift") //
+            .credentials("jclouds:joe", "letmein") //
+            .endpoint(server.getUrl("/").toString()) //
+            .modules(ImmutableSet.<Module> of(new ExecutorServiceModule(userExecutor, sameThreadExecutor()))) //
+            .build(RegionScopedBlobStoreContext.class);
+      try {
+         assertEquals(context.replicatedBlobStore(ImmutableList.of("DFW"), 1, 10000).list().size(), 1);
+      } finally {
+         release.countDown();
+         context.close();
+         userExecutor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   /**
+    * @return an executor whose only thread waits for {@code release}
+    */
+   private static ListeningExecutorService busyExecutor(final CountDownLatch release) {
+      ListeningExecutorService executor = listeningDecorator(Executors.newSingleThreadExecutor());
+      executor.submit(new Callable<Void>() {
+         public Void call() throws InterruptedException {
+            release.await();
+            return null;
+         }
+      });
+      return executor;
+   }
+
+   private static MockResponse chunk(String body, String contentRange) {
+      return new MockResponse().setResponseCode(206) //
+            .addHeader("Last-Modified", "Fri, 12 Jun 2010 13:40:18 GMT") //
+            .addHeader("ETag", "781e5e245d69b566979b86e28d23f2c7") //
+            .addHeader("Content-Range", contentRange) //
+            .addHeader("Content-Type", "application/octet-stream") //
+            .setBody(body);
+   }
+
+   static RegionScopedBlobStoreContext context(MockWebServer server) {
+      return context(server, new Properties());
+   }
+
+   static RegionScopedBlobStoreContext context(MockWebServer server, Properties overrides) {
+      return ContextBuilder.newBuilder("openstack-swift") //
+            .credentials("jclouds:joe", "letmein") //
+            .endpoint(server.getUrl("/").toString()) //
+            .overrides(overrides) //
+            .modules(ImmutableSet.<Module> of(new ExecutorServiceModule(sameThreadExecutor(), sameThreadExecutor()))) //
+            .build(RegionScopedBlobStoreContext.class);
+   }
+}
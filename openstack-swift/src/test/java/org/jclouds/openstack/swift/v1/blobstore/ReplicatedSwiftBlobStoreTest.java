@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.easymock.IAnswer;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.io.payloads.FilePayload;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+@Test(singleThreaded = true)
+public class ReplicatedSwiftBlobStoreTest {
+
+   private ListeningExecutorService executor;
+
+   @BeforeMethod
+   public void createExecutor() {
+      executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+   }
+
+   @AfterMethod
+   public void shutdownExecutor() {
+      executor.shutdownNow();
+   }
+
+   public void putBlobReturnsOnceQuorumIsReached() {
+      Blob blob = blob();
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.putBlob("container", blob, PutOptions.NONE)).andReturn("etag");
+      expect(ord.putBlob("container", blob, PutOptions.NONE)).andThrow(new IllegalStateException("ord is down"));
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 1, 1000);
+
+      assertEquals(replicated.putBlob("container", blob), "etag");
+      verify(dfw);
+   }
+
+   public void putBlobFailsWhenQuorumCannotBeReached() {
+      Blob blob = blob();
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.putBlob("container", blob, PutOptions.NONE)).andReturn("etag");
+      expect(ord.putBlob("container", blob, PutOptions.NONE)).andThrow(new IllegalStateException("ord is down"));
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 2, 1000);
+
+      try {
+         replicated.putBlob("container", blob);
+         fail("expected the quorum of 2 to fail");
+      } catch (IllegalStateException e) {
+         assertEquals(e.getMessage(), "ord is down");
+      }
+      assertEquals(replicated.failedWrites(), 1);
+   }
+
+   public void readsFailOverToTheNextRegion() {
+      BlobMetadata metadata = createMock(BlobMetadata.class);
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.blobMetadata("container", "name")).andThrow(new IllegalStateException("dfw is down"));
+      expect(ord.blobMetadata("container", "name")).andReturn(metadata);
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 1, 1000);
+
+      assertEquals(replicated.blobMetadata("container", "name"), metadata);
+      verify(dfw, ord);
+   }
+
+   public void readsPreferTheFastestRegion() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      // DFW fails first, so its latency becomes the timeout and ORD is asked first afterwards
+      expect(dfw.countBlobs("container")).andThrow(new IllegalStateException("dfw is down"));
+      expect(ord.countBlobs("container")).andReturn(1L).times(2);
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 1, 1000);
+
+      assertEquals(replicated.countBlobs("container"), 1);
+      assertEquals(replicated.countBlobs("container"), 1);
+      verify(dfw, ord);
+   }
+
+   public void missingBlobIsLookedUpInEveryRegion() {
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.blobMetadata("container", "name")).andReturn(null);
+      expect(ord.blobMetadata("container", "name")).andReturn(null);
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 1, 1000);
+
+      assertNull(replicated.blobMetadata("container", "name"));
+      verify(dfw, ord);
+   }
+
+   public void putBlobSpillsLargeStreamsToATemporaryFile() throws Exception {
+      Blob blob = new BlobBuilderImpl().name("name")
+            .payload(new ByteArrayInputStream(new byte[ReplicatedSwiftBlobStore.MEMORY_BUFFER_LIMIT + 1])).build();
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.putBlob("container", blob, PutOptions.NONE)).andReturn("etag");
+      expect(ord.putBlob("container", blob, PutOptions.NONE)).andReturn("etag");
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 2, 1000);
+
+      assertEquals(replicated.putBlob("container", blob), "etag");
+      verify(dfw, ord);
+      assertTrue(blob.getPayload() instanceof FilePayload);
+      assertEquals(blob.getMetadata().getContentMetadata().getContentLength(),
+            Long.valueOf(ReplicatedSwiftBlobStore.MEMORY_BUFFER_LIMIT + 1));
+      File spilled = FilePayload.class.cast(blob.getPayload()).getRawContent();
+      // deleted once both regions are done, which may be just after the quorum returned
+      for (int i = 0; i < 100 && spilled.exists(); i++) {
+         Thread.sleep(10);
+      }
+      assertFalse(spilled.exists());
+   }
+
+   public void readsReleaseThePayloadOfLateResults() throws Exception {
+      final CountDownLatch released = new CountDownLatch(1);
+      final Blob late = new BlobBuilderImpl().name("name").payload(new ByteArrayInputStream(new byte[1]) {
+         @Override
+         public void close() {
+            released.countDown();
+         }
+      }).build();
+      Blob blob = blob();
+      BlobStore dfw = createMock(BlobStore.class);
+      BlobStore ord = createMock(BlobStore.class);
+      expect(dfw.getBlob("container", "name", GetOptions.NONE)).andAnswer(new IAnswer<Blob>() {
+         @Override
+         public Blob answer() throws Throwable {
+            // outlives the interrupt from the cancelled read
+            long deadline = System.currentTimeMillis() + 200;
+            while (System.currentTimeMillis() < deadline) {
+               try {
+                  Thread.sleep(Math.max(1, deadline - System.currentTimeMillis()));
+               } catch (InterruptedException ignored) {
+               }
+            }
+            return late;
+         }
+      });
+      expect(ord.getBlob("container", "name", GetOptions.NONE)).andReturn(blob);
+      replay(dfw, ord);
+
+      ReplicatedSwiftBlobStore replicated = new ReplicatedSwiftBlobStore(ImmutableMap.of("DFW", dfw, "ORD", ord),
+            executor, 1, 50);
+
+      assertEquals(replicated.getBlob("container", "name"), blob);
+      assertTrue(released.await(1, SECONDS), "late payload was not released");
+   }
+
+   private static Blob blob() {
+      return new BlobBuilderImpl().name("name").payload("data").build();
+   }
+}
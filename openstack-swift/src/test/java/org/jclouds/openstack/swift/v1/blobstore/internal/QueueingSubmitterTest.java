@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+@Test
+public class QueueingSubmitterTest {
+
+   public void queuesTasksOverTheLimitWithoutBlocking() throws Exception {
+      ExecutorService executor = Executors.newCachedThreadPool();
+      try {
+         QueueingSubmitter submitter = new QueueingSubmitter(executor, 1);
+         final CountDownLatch release = new CountDownLatch(1);
+         ListenableFuture<String> first = submitter.submit(new Callable<String>() {
+            public String call() throws InterruptedException {
+               release.await();
+               return "first";
+            }
+         });
+         ListenableFuture<String> second = submitter.submit(new Callable<String>() {
+            public String call() {
+               return "second";
+            }
+         });
+
+         assertEquals(submitter.queued(), 1);
+         assertFalse(second.isDone());
+
+         release.countDown();
+         assertEquals(first.get(5, SECONDS), "first");
+         assertEquals(second.get(5, SECONDS), "second");
+         assertEquals(submitter.queued(), 0);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   public void cancelledTasksNeverRun() throws Exception {
+      ExecutorService executor = Executors.newCachedThreadPool();
+      try {
+         QueueingSubmitter submitter = new QueueingSubmitter(executor, 1);
+         final CountDownLatch release = new CountDownLatch(1);
+         final AtomicBoolean ran = new AtomicBoolean();
+         ListenableFuture<Void> first = submitter.submit(new Callable<Void>() {
+            public Void call() throws InterruptedException {
+               release.await();
+               return null;
+            }
+         });
+         ListenableFuture<Void> cancelled = submitter.submit(new Callable<Void>() {
+            public Void call() {
+               ran.set(true);
+               return null;
+            }
+         });
+         ListenableFuture<String> last = submitter.submit(new Callable<String>() {
+            public String call() {
+               return "last";
+            }
+         });
+
+         assertTrue(cancelled.cancel(false));
+         release.countDown();
+         first.get(5, SECONDS);
+
+         assertEquals(last.get(5, SECONDS), "last");
+         assertFalse(ran.get());
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelMultipartUploadMockTest.MB;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jclouds.io.internal.BasePayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class DirectorySyncMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void uploadsOnlyNewAndChangedFiles() throws Exception {
+      File directory = Files.createTempDir();
+      Files.write("foo", new File(directory, "same.txt"), UTF_8);
+      Files.write("bar", new File(directory, "changed.txt"), UTF_8);
+      Files.write("baz", new File(directory, "new.txt"), UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("["
+            + object("p/changed.txt", "acbd18db4cc2f85cedef654fccc4a4d8") + ","
+            + object("p/orphan.txt", "acbd18db4cc2f85cedef654fccc4a4d8") + ","
+            + object("p/same.txt", "acbd18db4cc2f85cedef654fccc4a4d8") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      // files are synced in no particular order, so any response fits the HEAD of changed.txt or an upload
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(objectResponse()));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         DirectorySync sync = new DirectorySync(api, "DFW", listeningDecorator(sameThreadExecutor()), 2,
+               Optional.<ParallelBulkDelete> absent());
+
+         DirectorySync.Result result = sync.execute(directory, "myContainer", "p/");
+         assertEquals(result.uploaded(), 2);
+         assertEquals(result.unchanged(), 1);
+         assertEquals(result.deleted(), 0);
+
+         assertEquals(server.getRequestCount(), 7);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         server.takeRequest();
+         server.takeRequest();
+         assertTrue(server.takeRequest().getRequestLine().endsWith("&marker=p/same.txt HTTP/1.1"));
+         for (int i = 0; i < 3; i++) {
+            RecordedRequest upload = server.takeRequest();
+            if (upload.getRequestLine().startsWith("HEAD ")) {
+               // whether it was a large object, whose segments are left over
+               assertEquals(upload.getRequestLine(),
+                     "HEAD /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/changed.txt HTTP/1.1");
+            } else if (upload.getRequestLine().contains("changed.txt")) {
+               assertEquals(upload.getRequestLine(),
+                     "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/changed.txt HTTP/1.1");
+               assertEquals(upload.getHeader("ETag"), "37b51d194a7513e45b56f6524f2d51f2");
+            } else {
+               assertEquals(upload.getRequestLine(),
+                     "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/new.txt HTTP/1.1");
+            }
+         }
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void splitsLargeFilesAndKeepsSegments() throws Exception {
+      File directory = Files.createTempDir();
+      Files.write(new byte[MB + 1], new File(directory, "big.bin"));
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      // a segment of an earlier upload, which has no local file of its own
+      server.enqueue(addCommonHeaders(containerResponse().setBody("["
+            + object("p/big.bin/slo/1/00000000", "acbd18db4cc2f85cedef654fccc4a4d8") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader("ETag", "\"a\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader("ETag", "\"b\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader("ETag", "\"ab\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ListeningExecutorService executor = listeningDecorator(sameThreadExecutor());
+         DirectorySync sync = new DirectorySync(api, "DFW", executor, 2, new ParallelMultipartUpload(api, "DFW",
+               new BasePayloadSlicer(), executor, MB, 2), Optional.of(new ParallelBulkDelete(api, "DFW", executor,
+               10, 2, 0)));
+
+         DirectorySync.Result result = sync.execute(directory, "myContainer", "p/");
+         assertEquals(result.uploaded(), 1);
+         assertEquals(result.deleted(), 0);
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         server.takeRequest();
+         assertTrue(server.takeRequest().getRequestLine().matches(
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.bin/slo/\\d+/00000000 HTTP/1.1"));
+         assertTrue(server.takeRequest().getRequestLine().matches(
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.bin/slo/\\d+/00000001 HTTP/1.1"));
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.bin?multipart-manifest=put HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void deletesSegmentsOfReplacedLargeObjects() throws Exception {
+      File directory = Files.createTempDir();
+      Files.write("bar", new File(directory, "big.txt"), UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("["
+            + object("p/big.txt", "acbd18db4cc2f85cedef654fccc4a4d8") + ","
+            + object("p/big.txt/slo/1/00000000", "acbd18db4cc2f85cedef654fccc4a4d8") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      server.enqueue(addCommonHeaders(objectResponse().addHeader("X-Static-Large-Object", "True")));
+      // another object's segment is left alone, as something else may still need it
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(
+            "[{\"name\": \"/myContainer/p/big.txt/slo/1/00000000\", \"hash\": \"x\", \"bytes\": 3},"
+                  + " {\"name\": \"/myContainer/p/other.txt/slo/1/00000000\", \"hash\": \"x\", \"bytes\": 3}]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(204)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         DirectorySync sync = new DirectorySync(api, "DFW", listeningDecorator(sameThreadExecutor()), 2,
+               Optional.<ParallelBulkDelete> absent());
+
+         assertEquals(sync.execute(directory, "myContainer", "p/").uploaded(), 1);
+
+         assertEquals(server.getRequestCount(), 7);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         server.takeRequest();
+         server.takeRequest();
+         assertEquals(server.takeRequest().getRequestLine(),
+               "HEAD /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.txt HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.txt?multipart-manifest=get HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.txt HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "DELETE /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/p/big.txt/slo/1/00000000 HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void md5MatchesContent() throws Exception {
+      File file = File.createTempFile("md5", ".txt");
+      try {
+         Files.write("foo", file, UTF_8);
+         assertEquals(BaseEncoding.base16().lowerCase().encode(DirectorySync.md5(file)),
+               "acbd18db4cc2f85cedef654fccc4a4d8");
+      } finally {
+         file.delete();
+      }
+   }
+
+   private static String object(String name, String hash) {
+      return "{\"name\":\"" + name + "\",\"hash\":\"" + hash + "\",\"bytes\":3,"
+            + "\"content_type\":\"text/plain\",\"last_modified\":\"2009-02-03T05:26:32.612278\"}";
+   }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.net.HttpHeaders;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class NestedManifestWriterMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   private static final String ACCOUNT = "/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9";
+
+   public void shortManifestIsWrittenDirectly() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"top\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         NestedManifestWriter writer = new NestedManifestWriter(api, "DFW", listeningDecorator(sameThreadExecutor()),
+               2, 2);
+
+         assertEquals(writer.execute("myContainer", "myObject", "myObject/slo/1/", segments(2),
+               ImmutableMap.<String, String> of()), "top");
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT " + ACCOUNT + "/myContainer/myObject?multipart-manifest=put HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void longManifestIsNested() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      for (int i = 0; i < 5; i++) {
+         server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG,
+               "\"sub" + i + "\"")));
+      }
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"top\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         NestedManifestWriter writer = new NestedManifestWriter(api, "DFW", listeningDecorator(sameThreadExecutor()),
+               2, 2);
+
+         // 5 segments make 3 sub-manifests, which make 2 more, which fit in the top manifest
+         assertEquals(writer.execute("myContainer", "myObject", "myObject/slo/1/", segments(5),
+               ImmutableMap.<String, String> of()), "top");
+
+         assertEquals(server.getRequestCount(), 7);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         for (int i = 0; i < 3; i++) {
+            assertEquals(server.takeRequest().getRequestLine(), String.format(
+                  "PUT %s/myContainer/myObject/slo/1/manifest/1/%08d?multipart-manifest=put HTTP/1.1", ACCOUNT, i));
+         }
+         RecordedRequest secondLevel = server.takeRequest();
+         assertEquals(secondLevel.getRequestLine(),
+               "PUT " + ACCOUNT + "/myContainer/myObject/slo/1/manifest/2/00000000?multipart-manifest=put HTTP/1.1");
+         String body = new String(secondLevel.getBody());
+         assertTrue(body.contains("\"path\":\"/myContainer/myObject/slo/1/manifest/1/00000000\",\"etag\":\"sub0\","
+               + "\"size_bytes\":20"), body);
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT " + ACCOUNT + "/myContainer/myObject/slo/1/manifest/2/00000001?multipart-manifest=put HTTP/1.1");
+         RecordedRequest top = server.takeRequest();
+         assertEquals(top.getRequestLine(), "PUT " + ACCOUNT + "/myContainer/myObject?multipart-manifest=put HTTP/1.1");
+         assertTrue(new String(top.getBody()).contains("\"etag\":\"sub4\",\"size_bytes\":10"));
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   private static List<Segment> segments(int count) {
+      List<Segment> segments = Lists.newArrayList();
+      for (int i = 0; i < count; i++) {
+         segments.add(Segment.builder().path(String.format("/myContainer/myObject/slo/1/%08d", i)).etag("etag" + i)
+               .sizeBytes(10).build());
+      }
+      return segments;
+   }
+}
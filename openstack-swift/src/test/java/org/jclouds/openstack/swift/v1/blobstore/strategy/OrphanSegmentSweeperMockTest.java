@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test
+public class OrphanSegmentSweeperMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   private static final String ACCOUNT = "/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9";
+
+   public void findsSegmentsNoManifestReferences() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[" //
+            + entry("a/slo/1/00000000", "2014-01-01") + "," //
+            + entry("a/slo/1/00000001", "2014-01-01") + "," //
+            // an earlier upload of a, since replaced
+            + entry("a/slo/9/00000000", "2014-01-01") + "," //
+            + entry("b/slo/2/00000000", "2014-01-01") + "," //
+            + entry("b/slo/2/manifest/1/00000000", "2014-01-01") + "," //
+            + entry("c/dlo/3/00000000", "2014-01-01") + "," //
+            // d was never committed
+            + entry("d/dlo/4/00000000", "2014-01-01") + "," //
+            // too recent to tell apart from an upload still running
+            + entry("d/dlo/5/00000000", "2014-03-01") + "," //
+            // resumable uploads may be paused for any time
+            + entry("e/resumable/6/00000000", "2014-01-01") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[" //
+            + entry("a", "2014-01-01") + "," //
+            + entry("b", "2014-01-01") + "," //
+            + entry("c", "2014-01-01") + "," //
+            + entry("plain", "2014-01-01") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      server.enqueue(addCommonHeaders(objectResponse().addHeader("X-Static-Large-Object", "True")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(
+            "[{\"name\": \"/segments/a/slo/1/00000000\", \"hash\": \"x\", \"bytes\": 1}, "
+                  + "{\"name\": \"/segments/a/slo/1/00000001\", \"hash\": \"y\", \"bytes\": 1}]")));
+      server.enqueue(addCommonHeaders(objectResponse().addHeader("X-Static-Large-Object", "True")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(
+            "[{\"name\": \"/segments/b/slo/2/manifest/1/00000000\", \"hash\": \"z\", \"bytes\": 1, "
+                  + "\"sub_slo\": true}]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(
+            "[{\"name\": \"/segments/b/slo/2/00000000\", \"hash\": \"x\", \"bytes\": 1}]")));
+      server.enqueue(addCommonHeaders(objectResponse().addHeader("X-Object-Manifest", "segments/c/dlo/3/")));
+      server.enqueue(addCommonHeaders(objectResponse()));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         OrphanSegmentSweeper sweeper = new OrphanSegmentSweeper(api, "DFW", listeningDecorator(sameThreadExecutor()),
+               2, new ParallelBulkDelete(api, "DFW", listeningDecorator(sameThreadExecutor()), 10, 2, 0));
+
+         assertEquals(sweeper.find(ImmutableSet.of("segments"), ImmutableSet.of("manifests"), new Date(
+               1391212800000L /* 2014-02-01 */)), ImmutableList.of("segments/a/slo/9/00000000",
+               "segments/d/dlo/4/00000000"));
+
+         assertEquals(server.getRequestCount(), 12);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertTrue(server.takeRequest().getRequestLine().startsWith("GET " + ACCOUNT + "/segments/?format=json"));
+         server.takeRequest();
+         assertTrue(server.takeRequest().getRequestLine().startsWith("GET " + ACCOUNT + "/manifests/?format=json"));
+         server.takeRequest();
+         // segments are never read as manifests of their own
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/manifests/a HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET " + ACCOUNT + "/manifests/a?multipart-manifest=get HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/manifests/b HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET " + ACCOUNT + "/manifests/b?multipart-manifest=get HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET " + ACCOUNT + "/segments/b/slo/2/manifest/1/00000000?multipart-manifest=get HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/manifests/c HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "HEAD " + ACCOUNT + "/manifests/plain HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void readsNoManifestsWithoutStaleSegments() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[" //
+            + entry("a", "2014-01-01") + "," //
+            + entry("a/slo/1/00000000", "2014-03-01") + "]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         OrphanSegmentSweeper sweeper = new OrphanSegmentSweeper(api, "DFW", listeningDecorator(sameThreadExecutor()),
+               2, new ParallelBulkDelete(api, "DFW", listeningDecorator(sameThreadExecutor()), 10, 2, 0));
+
+         assertEquals(sweeper.execute("myContainer", new Date(1391212800000L /* 2014-02-01 */)), 0);
+         assertEquals(server.getRequestCount(), 3);
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   private static String entry(String name, String day) {
+      return String.format("{\"name\":\"%s\",\"hash\":\"x\",\"bytes\":1,\"content_type\":\"application/octet-stream\","
+            + "\"last_modified\":\"%sT00:00:00.000000\"}", name, day);
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.BulkDeleteResponse;
+import org.jclouds.openstack.swift.v1.features.BulkApi;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Bulk deletes send a body on DELETE, which MockWebServer can't be driven
+ * with, so the api is mocked instead.
+ */
+@Test
+public class ParallelBulkDeleteTest {
+
+   public void retriesServerErrorsWithThePathsAsRequested() {
+      BulkApi bulkApi = createMock(BulkApi.class);
+      expect(bulkApi.bulkDelete(ImmutableList.of("myContainer/a b", "myContainer/c"))).andReturn(
+            BulkDeleteResponse.create(1, 0, ImmutableMap.of("/v1/12345678912345/myContainer/a b", "503 Unavailable")));
+      expect(bulkApi.bulkDelete(ImmutableList.of("myContainer/a b"))).andReturn(
+            BulkDeleteResponse.create(1, 0, ImmutableMap.<String, String> of()));
+      replay(bulkApi);
+
+      assertEquals(bulkDelete(bulkApi, 1).execute(ImmutableList.of("myContainer/a b", "myContainer/c")), 2);
+      verify(bulkApi);
+   }
+
+   public void failsWithoutRetryingClientErrors() {
+      BulkApi bulkApi = createMock(BulkApi.class);
+      expect(bulkApi.bulkDelete(ImmutableList.of("myContainer", "myContainer/c"))).andReturn(
+            BulkDeleteResponse.create(1, 0, ImmutableMap.of("/myContainer", "409 Conflict")));
+      replay(bulkApi);
+
+      try {
+         bulkDelete(bulkApi, 3).execute(ImmutableList.of("myContainer", "myContainer/c"));
+         fail("expected the conflict to fail the delete");
+      } catch (IllegalStateException e) {
+         assertTrue(e.getMessage().startsWith("could not delete 1 paths after 1 attempts"), e.getMessage());
+      }
+      verify(bulkApi);
+   }
+
+   public void failsOnceRetriesAreExhausted() {
+      BulkApi bulkApi = createMock(BulkApi.class);
+      BulkDeleteResponse throttled = BulkDeleteResponse.create(0, 0,
+            ImmutableMap.of("/myContainer/a", "429 Too Many Requests"));
+      expect(bulkApi.bulkDelete(ImmutableList.of("myContainer/a"))).andReturn(throttled).times(2);
+      replay(bulkApi);
+
+      try {
+         bulkDelete(bulkApi, 1).execute(ImmutableList.of("myContainer/a"));
+         fail("expected the delete to give up");
+      } catch (IllegalStateException e) {
+         assertTrue(e.getMessage().startsWith("could not delete 1 paths after 2 attempts"), e.getMessage());
+      }
+      verify(bulkApi);
+   }
+
+   private static ParallelBulkDelete bulkDelete(BulkApi bulkApi, int maxRetries) {
+      SwiftApi api = createMock(SwiftApi.class);
+      expect(api.bulkApiInRegion("DFW")).andReturn(bulkApi).anyTimes();
+      replay(api);
+      return new ParallelBulkDelete(api, "DFW", listeningDecorator(sameThreadExecutor()), 10, 2, maxRetries);
+   }
+}
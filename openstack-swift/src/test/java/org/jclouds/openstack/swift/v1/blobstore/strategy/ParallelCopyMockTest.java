@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.collect.PrefetchingObjectListMockTest.page;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Optional;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+// TODO: moves cannot be tested offline, as they rely on bulk delete
+@Test
+public class ParallelCopyMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void copiesEveryObjectUnderPrefix() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("old/a", "old/b"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelCopy copy = new ParallelCopy(api, "DFW", listeningDecorator(sameThreadExecutor()), 2,
+               Optional.<ParallelBulkDelete> absent());
+
+         assertEquals(copy.execute("myContainer", "old/", "otherContainer", new Function<String, String>() {
+            @Override
+            public String apply(String name) {
+               return "new/" + name.substring("old/".length());
+            }
+         }), 2);
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertTrue(server.takeRequest().getRequestLine().startsWith(
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json"));
+         assertTrue(server.takeRequest().getRequestLine().endsWith("&marker=old/b HTTP/1.1"));
+         for (String name : new String[] { "a", "b" }) {
+            RecordedRequest copyRequest = server.takeRequest();
+            assertEquals(copyRequest.getRequestLine(),
+                  "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/otherContainer/new/" + name
+                        + "?multipart-manifest=get HTTP/1.1");
+            assertEquals(copyRequest.getHeader("X-Copy-From"), "/myContainer/old/" + name);
+         }
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void copiesManifestsWithoutTheirSegments() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("old/big", "old/big/slo/1/00000000",
+            "old/big/slo/1/00000001", "old/resumed/resumable/2/00000000", "old/small"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelCopy copy = new ParallelCopy(api, "DFW", listeningDecorator(sameThreadExecutor()), 2,
+               Optional.<ParallelBulkDelete> absent());
+
+         assertEquals(copy.execute("myContainer", "old/", "otherContainer", Functions.<String> identity()), 2);
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         server.takeRequest();
+         server.takeRequest();
+         for (String name : new String[] { "big", "small" }) {
+            RecordedRequest copyRequest = server.takeRequest();
+            assertEquals(copyRequest.getRequestLine(),
+                  "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/otherContainer/old/" + name
+                        + "?multipart-manifest=get HTTP/1.1");
+            assertEquals(copyRequest.getHeader("X-Copy-From"), "/myContainer/old/" + name);
+         }
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void rejectsRenamesBackUnderThePrefix() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("old/a", "old/b"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelCopy copy = new ParallelCopy(api, "DFW", listeningDecorator(sameThreadExecutor()), 2,
+               Optional.<ParallelBulkDelete> absent());
+
+         copy.execute("myContainer", "old/", "myContainer", new Function<String, String>() {
+            @Override
+            public String apply(String name) {
+               return "old/copy/" + name.substring("old/".length());
+            }
+         });
+         fail("expected the rename to be rejected");
+      } catch (IllegalStateException e) {
+         assertTrue(e.getMessage().contains("listed under old/ again"), e.getMessage());
+         // nothing was copied
+         assertEquals(server.getRequestCount(), 3);
+      } finally {
+         server.shutdown();
+      }
+   }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static com.google.common.net.HttpHeaders.RANGE;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class ParallelDownloadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void downloadsRangesIntoFile() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(rangeResponse("AB", "bytes 0-1/4")));
+      server.enqueue(addCommonHeaders(rangeResponse("CD", "bytes 2-3/4")));
+
+      File destination = File.createTempFile("download", ".tmp");
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelDownload download = new ParallelDownload(api, "DFW", listeningDecorator(sameThreadExecutor()), 2, 1,
+               0);
+
+         assertEquals(download.execute("myContainer", "myObject", destination), 4);
+         assertEquals(Files.toString(destination, US_ASCII), "ABCD");
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "HEAD /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject HTTP/1.1");
+         RecordedRequest first = server.takeRequest();
+         assertEquals(first.getHeader(RANGE), "bytes=0-1");
+         RecordedRequest second = server.takeRequest();
+         assertEquals(second.getHeader(RANGE), "bytes=2-3");
+      } finally {
+         destination.delete();
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "myObject changed during download.*")
+   public void failsWhenObjectChanges() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(rangeResponse("AB", "bytes 0-1/4").setHeader("ETag", "deadbeef")));
+
+      File destination = File.createTempFile("download", ".tmp");
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         new ParallelDownload(api, "DFW", listeningDecorator(sameThreadExecutor()), 2, 1, 3).execute("myContainer",
+               "myObject", destination);
+      } finally {
+         destination.delete();
+         server.shutdown();
+      }
+   }
+
+   public void retriesResponsesWhichAreNotTheRange() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      // the range was ignored, and the whole object returned
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(rangeResponse("AB", "bytes 0-1/4")));
+      server.enqueue(addCommonHeaders(rangeResponse("CD", "bytes 2-3/4")));
+
+      File destination = File.createTempFile("download", ".tmp");
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelDownload download = new ParallelDownload(api, "DFW", listeningDecorator(sameThreadExecutor()), 2, 1,
+               1);
+
+         assertEquals(download.execute("myContainer", "myObject", destination), 4);
+         assertEquals(Files.toString(destination, US_ASCII), "ABCD");
+
+         assertEquals(server.getRequestCount(), 5);
+         server.takeRequest();
+         server.takeRequest();
+         assertEquals(server.takeRequest().getHeader(RANGE), "bytes=0-1");
+         assertEquals(server.takeRequest().getHeader(RANGE), "bytes=0-1");
+         assertEquals(server.takeRequest().getHeader(RANGE), "bytes=2-3");
+      } finally {
+         destination.delete();
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = RuntimeException.class,
+         expectedExceptionsMessageRegExp = "java.io.IOException: expected bytes 0-1 of myObject.*")
+   public void failsWhenRangeIsNeverReturned() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(rangeResponse("BC", "bytes 1-2/4")));
+
+      File destination = File.createTempFile("download", ".tmp");
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         new ParallelDownload(api, "DFW", listeningDecorator(sameThreadExecutor()), 2, 1, 0).execute("myContainer",
+               "myObject", destination);
+      } finally {
+         destination.delete();
+         server.shutdown();
+      }
+   }
+
+   static MockResponse rangeResponse(String body, String contentRange) {
+      return objectResponse().setResponseCode(206).setBody(body.getBytes(US_ASCII))
+            .setHeader("Content-Length", Integer.toString(body.length())).setHeader("Content-Range", contentRange);
+   }
+}
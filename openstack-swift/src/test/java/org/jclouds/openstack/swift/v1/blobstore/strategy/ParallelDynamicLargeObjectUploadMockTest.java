@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelMultipartUploadMockTest.MB;
+import static org.jclouds.openstack.swift.v1.collect.PrefetchingObjectListMockTest.page;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.io.Payloads;
+import org.jclouds.io.internal.BasePayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.Segment;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.net.HttpHeaders;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class ParallelDynamicLargeObjectUploadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void uploadsSegmentsThenManifest() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"a\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"b\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"m\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         Blob blob = new BlobBuilderImpl().name("myLog").payload(new byte[MB + MB / 2]).build();
+         ParallelDynamicLargeObjectUpload upload = new ParallelDynamicLargeObjectUpload(api, "DFW",
+               new BasePayloadSlicer(), listeningDecorator(sameThreadExecutor()), MB, 2);
+
+         assertEquals(upload.execute("myContainer", blob), "m");
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         for (int i = 0; i < 2; i++) {
+            RecordedRequest segment = server.takeRequest();
+            assertTrue(segment.getRequestLine().matches(
+                  "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myLog/dlo/[0-9]+/0000000"
+                        + i + " HTTP/1.1"), segment.getRequestLine());
+         }
+         RecordedRequest manifest = server.takeRequest();
+         assertEquals(manifest.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myLog HTTP/1.1");
+         assertTrue(manifest.getHeader("X-Object-Manifest").matches("myContainer/myLog/dlo/[0-9]+/"),
+               manifest.getHeader("X-Object-Manifest"));
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void appendsAfterLastSegment() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse().addHeader("X-Object-Manifest", "mySegments/myLog/")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("myLog/00000000", "myLog/00000001"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"c\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ParallelDynamicLargeObjectUpload upload = new ParallelDynamicLargeObjectUpload(api, "DFW",
+               new BasePayloadSlicer(), listeningDecorator(sameThreadExecutor()), MB, 2);
+
+         List<Segment> appended = upload.append("myContainer", "myLog", Payloads.newByteArrayPayload(new byte[10]));
+         assertEquals(appended.size(), 1);
+         assertEquals(appended.get(0).path(), "/mySegments/myLog/00000002");
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "HEAD /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myLog HTTP/1.1");
+         for (int i = 0; i < 2; i++) {
+            assertTrue(server.takeRequest().getRequestLine().startsWith(
+                  "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/mySegments/?format=json"));
+         }
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/mySegments/myLog/00000002 HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.io.Payloads;
+import org.jclouds.io.internal.BasePayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class ParallelMultipartUploadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   static final int MB = 1024 * 1024;
+
+   public void uploadsSegmentsThenManifest() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"a\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"b\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"c\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"abc\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         Blob blob = new BlobBuilderImpl().name("myObject").payload(new byte[2 * MB + MB / 2]).build();
+         ParallelMultipartUpload upload = new ParallelMultipartUpload(api, "DFW", new BasePayloadSlicer(),
+               listeningDecorator(sameThreadExecutor()), MB, 2);
+
+         assertEquals(upload.execute("myContainer", blob), "abc");
+
+         assertEquals(server.getRequestCount(), 5);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         for (int i = 0; i < 3; i++) {
+            RecordedRequest segment = server.takeRequest();
+            assertTrue(segment.getRequestLine().matches(
+                  "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject/slo/[0-9]+/0000000"
+                        + i + " HTTP/1.1"), segment.getRequestLine());
+            assertEquals(segment.getBody().length, i < 2 ? MB : MB / 2);
+         }
+         RecordedRequest manifest = server.takeRequest();
+         assertEquals(manifest.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject?multipart-manifest=put HTTP/1.1");
+         assertTrue(new String(manifest.getBody()).contains("\"etag\":\"c\",\"size_bytes\":" + MB / 2));
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void smallPayloadIsSinglePut() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"a\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         Blob blob = new BlobBuilderImpl().name("myObject").payload(new byte[MB / 2]).build();
+         ParallelMultipartUpload upload = new ParallelMultipartUpload(api, "DFW", new BasePayloadSlicer(),
+               listeningDecorator(sameThreadExecutor()), MB, 2);
+
+         assertEquals(upload.execute("myContainer", blob), "a");
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void shortStreamIsSinglePutCheckedBySwift() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"a\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         byte[] data = new byte[MB / 2];
+         Blob blob = new BlobBuilderImpl().name("myObject")
+               .payload(Payloads.newInputStreamPayload(new ByteArrayInputStream(data))).build();
+         ParallelMultipartUpload upload = new ParallelMultipartUpload(api, "DFW", new BasePayloadSlicer(),
+               listeningDecorator(sameThreadExecutor()), MB, 2);
+
+         assertEquals(upload.execute("myContainer", blob), "a");
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         RecordedRequest put = server.takeRequest();
+         assertEquals(put.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject HTTP/1.1");
+         assertEquals(put.getHeader(HttpHeaders.ETAG), Hashing.md5().hashBytes(data).toString());
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void streamFillingTheBufferIsSegmentedWithMD5s() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"a\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"b\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"ab\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         byte[] data = new byte[MB + MB / 2];
+         for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+         }
+         Blob blob = new BlobBuilderImpl().name("myObject")
+               .payload(Payloads.newInputStreamPayload(new ByteArrayInputStream(data))).build();
+         // segments larger than the buffer, as when they exceed the largest array
+         ListeningExecutorService executor = listeningDecorator(sameThreadExecutor());
+         ParallelMultipartUpload upload = new ParallelMultipartUpload(api, "DFW", new ParallelSegmentUpload(api,
+               "DFW", new BasePayloadSlicer(), executor, 2 * MB, 2, MB), new NestedManifestWriter(api, "DFW",
+               executor, NestedManifestWriter.DEFAULT_MAX_SEGMENTS, 2));
+
+         assertEquals(upload.execute("myContainer", blob), "ab");
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         for (int i = 0; i < 2; i++) {
+            RecordedRequest segment = server.takeRequest();
+            assertTrue(segment.getRequestLine().matches(
+                  "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject/slo/[0-9]+/0000000"
+                        + i + " HTTP/1.1"), segment.getRequestLine());
+            byte[] expected = Arrays.copyOfRange(data, i * MB, Math.min(data.length, (i + 1) * MB));
+            assertEquals(segment.getBody(), expected);
+            assertEquals(segment.getHeader(HttpHeaders.ETAG), Hashing.md5().hashBytes(expected).toString());
+         }
+         assertEquals(server.takeRequest().getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject?multipart-manifest=put HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+}
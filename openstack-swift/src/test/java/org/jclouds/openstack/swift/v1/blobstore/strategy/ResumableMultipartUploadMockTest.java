@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.blobstore.strategy.ParallelMultipartUploadMockTest.MB;
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.internal.BlobBuilderImpl;
+import org.jclouds.io.internal.BasePayloadSlicer;
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.net.HttpHeaders;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class ResumableMultipartUploadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   private static final String ACCOUNT = "/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9";
+   private static final String ZEROS = Hashing.md5().hashBytes(new byte[MB]).toString();
+
+   public void uploadsOnlySegmentsMissingFromJournalOrContainer() throws Exception {
+      File journal = File.createTempFile("upload", ".journal");
+      // segment 1 was journaled, but is gone from the container
+      Files.write("# swift resumable upload\n" //
+            + "myContainer/myObject\tmyObject/resumable/1/\t" + (2 * MB + MB / 2) + "\t" + MB + "\t-1\n" //
+            + "0\t/myContainer/myObject/resumable/1/00000000\t" + ZEROS + "\t" + MB + "\n" //
+            + "1\t/myContainer/myObject/resumable/1/00000001\tb\t" + MB + "\n" //
+            + "2\t/myContainer/myOb", journal, UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[{\"name\":\"myObject/resumable/1/00000000\","
+            + "\"hash\":\"" + ZEROS + "\",\"bytes\":" + MB + ",\"content_type\":\"application/octet-stream\","
+            + "\"last_modified\":\"2009-02-03T05:26:32.612278\"}]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"b2\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"c\"")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader(HttpHeaders.ETAG, "\"abc\"")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         Blob blob = new BlobBuilderImpl().name("myObject").payload(new byte[2 * MB + MB / 2]).build();
+         ResumableMultipartUpload upload = new ResumableMultipartUpload(api, "DFW", new BasePayloadSlicer(),
+               listeningDecorator(sameThreadExecutor()), MB, 2, 1000);
+
+         assertEquals(upload.execute("myContainer", blob, journal), "abc");
+
+         assertEquals(server.getRequestCount(), 6);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertTrue(server.takeRequest().getRequestLine().startsWith(
+               "GET " + ACCOUNT + "/myContainer/?format=json"));
+         assertTrue(server.takeRequest().getRequestLine().endsWith(
+               "&marker=myObject/resumable/1/00000000 HTTP/1.1"));
+         RecordedRequest second = server.takeRequest();
+         assertEquals(second.getRequestLine(),
+               "PUT " + ACCOUNT + "/myContainer/myObject/resumable/1/00000001 HTTP/1.1");
+         assertEquals(second.getBody().length, MB);
+         RecordedRequest third = server.takeRequest();
+         assertEquals(third.getRequestLine(),
+               "PUT " + ACCOUNT + "/myContainer/myObject/resumable/1/00000002 HTTP/1.1");
+         assertEquals(third.getBody().length, MB / 2);
+         String manifest = new String(server.takeRequest().getBody());
+         assertTrue(manifest.contains("\"path\":\"/myContainer/myObject/resumable/1/00000000\",\"etag\":\"" + ZEROS
+               + "\""), manifest);
+         assertTrue(manifest.contains("\"path\":\"/myContainer/myObject/resumable/1/00000001\",\"etag\":\"b2\""),
+               manifest);
+         assertFalse(journal.exists());
+      } finally {
+         journal.delete();
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = IllegalArgumentException.class,
+         expectedExceptionsMessageRegExp = "journal .* records segment 0 with etag a, but the payload now has md5 .*")
+   public void rejectsJournalOfChangedSource() throws Exception {
+      File journal = File.createTempFile("upload", ".journal");
+      Files.write("# swift resumable upload\n" //
+            + "myContainer/myObject\tmyObject/resumable/1/\t" + (2 * MB) + "\t" + MB + "\t-1\n" //
+            + "0\t/myContainer/myObject/resumable/1/00000000\ta\t" + MB + "\n", journal, UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[{\"name\":\"myObject/resumable/1/00000000\","
+            + "\"hash\":\"a\",\"bytes\":" + MB + ",\"content_type\":\"application/octet-stream\","
+            + "\"last_modified\":\"2009-02-03T05:26:32.612278\"}]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         // the first megabyte is no longer what was stored
+         Blob blob = new BlobBuilderImpl().name("myObject").payload(new byte[2 * MB]).build();
+         new ResumableMultipartUpload(api, "DFW", new BasePayloadSlicer(), listeningDecorator(sameThreadExecutor()),
+               MB, 2, 1000).execute("myContainer", blob, journal);
+      } finally {
+         journal.delete();
+         server.shutdown();
+      }
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.blobstore.strategy;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.ExtractArchiveResponse;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class StreamingArchiveUploadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void streamsTarAndRetriesFailedEntries() throws Exception {
+      File directory = Files.createTempDir();
+      Files.write("foo", new File(directory, "a.txt"), UTF_8);
+      new File(directory, "dir").mkdir();
+      Files.write("bar", new File(directory, "dir/b.txt"), UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).setBody(
+            "{\"Number Files Created\": 1, \"Errors\": [[\"/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9"
+                  + "/myContainer/prefix/dir/b.txt\", \"503 Service Unavailable\"]]}")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader("ETag", "\"b\"")));
+
+      ListeningExecutorService executor = listeningDecorator(Executors.newSingleThreadExecutor());
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         StreamingArchiveUpload upload = new StreamingArchiveUpload(api, "DFW", executor);
+
+         ExtractArchiveResponse response = upload.execute("myContainer/prefix", directory, false);
+         assertEquals(response, ExtractArchiveResponse.create(2, ImmutableMap.<String, String> of()));
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         RecordedRequest extract = server.takeRequest();
+         assertEquals(extract.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/prefix?extract-archive=tar HTTP/1.1");
+         assertEquals(extract.getHeader("Transfer-Encoding"), "chunked");
+         byte[] tar = extract.getBody();
+         // two headers, two padded bodies and the two end of archive blocks
+         assertEquals(tar.length, 6 * 512);
+         String archive = new String(tar, UTF_8);
+         assertTrue(archive.contains("a.txt"), archive);
+         assertTrue(archive.contains("dir/b.txt"), archive);
+         assertTrue(archive.contains("ustar"), archive);
+
+         RecordedRequest retry = server.takeRequest();
+         assertEquals(retry.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/prefix/dir/b.txt HTTP/1.1");
+         assertEquals(new String(retry.getBody(), UTF_8), "bar");
+      } finally {
+         executor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   public void retriesTheEntryAtTheFailedPathRatherThanOneEndingLikeIt() throws Exception {
+      File directory = Files.createTempDir();
+      new File(directory, "c/x").mkdirs();
+      new File(directory, "x").mkdir();
+      Files.write("bar", new File(directory, "c/x/b.txt"), UTF_8);
+      Files.write("baz", new File(directory, "x/b.txt"), UTF_8);
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).setBody(
+            "{\"Number Files Created\": 1, \"Errors\": [[\"/v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9"
+                  + "/c/x/b.txt\", \"503 Service Unavailable\"]]}")));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201).addHeader("ETag", "\"b\"")));
+
+      ListeningExecutorService executor = listeningDecorator(Executors.newSingleThreadExecutor());
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         StreamingArchiveUpload upload = new StreamingArchiveUpload(api, "DFW", executor);
+
+         ExtractArchiveResponse response = upload.execute("", directory, false);
+         assertEquals(response, ExtractArchiveResponse.create(2, ImmutableMap.<String, String> of()));
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         server.takeRequest();
+         RecordedRequest retry = server.takeRequest();
+         assertEquals(retry.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/c/x/b.txt HTTP/1.1");
+         assertEquals(new String(retry.getBody(), UTF_8), "bar");
+      } finally {
+         executor.shutdownNow();
+         server.shutdown();
+      }
+   }
+
+   public void objectPathDropsVersionAndAccount() {
+      assertEquals(StreamingArchiveUpload.objectPath("/v1/AUTH_a/c/dir/b.txt"), "c/dir/b.txt");
+      assertNull(StreamingArchiveUpload.objectPath("/v1/AUTH_a"));
+      assertNull(StreamingArchiveUpload.objectPath("v1/AUTH_a/c/b.txt"));
+   }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.cache;
+
+import static org.jclouds.openstack.swift.v1.features.ObjectApiMockTest.objectResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.jclouds.util.Strings2;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test
+public class ConditionalObjectCacheMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void servesNotModifiedFromDisk() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse()));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(304)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         File directory = Files.createTempDir();
+         ConditionalObjectCache cache = new ConditionalObjectCache(
+               api.objectApiInRegionForContainer("DFW", "myContainer"), directory, 1024);
+
+         SwiftObject first = cache.get("myObject");
+         assertEquals(Strings2.toStringAndClose(first.payload().getInput()), "ABCD");
+         SwiftObject second = cache.get("myObject");
+         assertEquals(Strings2.toStringAndClose(second.payload().getInput()), "ABCD");
+         assertEquals(second.etag(), "8a964ee2a5e88be344f36c22562a6486");
+
+         assertEquals(cache.stats().hitCount(), 1);
+         assertEquals(cache.stats().missCount(), 1);
+         assertEquals(cache.bytesSaved(), 4);
+         assertEquals(cache.totalBytes(), 4);
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertNull(server.takeRequest().getHeader("If-None-Match"));
+         assertTrue(server.takeRequest().getHeader("If-None-Match").contains("8a964ee2a5e88be344f36c22562a6486"));
+      } finally {
+         server.shutdown();
+      }
+   }
+}
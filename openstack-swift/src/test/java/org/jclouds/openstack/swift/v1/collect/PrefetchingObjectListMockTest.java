@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.collect;
+
+import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.containerResponse;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.delimiter;
+import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.limit;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.swift.v1.domain.SwiftObject;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test
+public class PrefetchingObjectListMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void followsMarkers() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("a", "b"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("c"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         PrefetchingObjectList objects = PrefetchingObjectList.create(
+               api.objectApiInRegionForContainer("DFW", "myContainer"), limit(2));
+
+         ImmutableList.Builder<String> names = ImmutableList.builder();
+         for (SwiftObject object : objects.concat()) {
+            names.add(object.name());
+         }
+         assertEquals(names.build(), ImmutableList.of("a", "b", "c"));
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=2 HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=2&marker=b HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=2&marker=c HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void pagesSmallerThanTheLimitKeepPaging() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      // a cluster whose container_listing_limit is 2
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("a", "b"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("c", "d"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("e"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         PrefetchingObjectList objects = PrefetchingObjectList.create(
+               api.objectApiInRegionForContainer("DFW", "myContainer"), limit(5));
+
+         ImmutableList.Builder<String> names = ImmutableList.builder();
+         for (SwiftObject object : objects.concat()) {
+            names.add(object.name());
+         }
+         assertEquals(names.build(), ImmutableList.of("a", "b", "c", "d", "e"));
+
+         assertEquals(server.getRequestCount(), 5);
+         server.takeRequest();
+         server.takeRequest();
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=5&marker=b HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=5&marker=d HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/?format=json&limit=5&marker=e HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void pagesOfSubdirsKeepPaging() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[{\"subdir\":\"a/\"},{\"subdir\":\"b/\"}]")));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("c"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         PrefetchingObjectList objects = PrefetchingObjectList.create(
+               api.objectApiInRegionForContainer("DFW", "myContainer"), delimiter('/').limit(2));
+
+         assertEquals(objects.concat().size(), 1);
+
+         assertEquals(server.getRequestCount(), 4);
+         server.takeRequest();
+         server.takeRequest();
+         assertTrue(server.takeRequest().getRequestLine().endsWith("&marker=b/ HTTP/1.1"));
+         assertTrue(server.takeRequest().getRequestLine().endsWith("&marker=c HTTP/1.1"));
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void limitAboveServerMaximumKeepsPaging() throws Exception {
+      String[] full = new String[PrefetchingObjectList.DEFAULT_LIMIT];
+      for (int i = 0; i < full.length; i++) {
+         full[i] = String.format("%05d", i);
+      }
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page(full))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page("z"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody(page())));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         PrefetchingObjectList objects = PrefetchingObjectList.create(
+               api.objectApiInRegionForContainer("DFW", "myContainer"), limit(20000));
+
+         // swift caps the page at its own limit, so the first page isn't the last
+         assertEquals(objects.concat().size(), PrefetchingObjectList.DEFAULT_LIMIT + 1);
+
+         assertEquals(server.getRequestCount(), 4);
+         server.takeRequest();
+         server.takeRequest();
+         assertEquals(server.takeRequest().getRequestLine(), "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9"
+               + "/myContainer/?format=json&limit=20000&marker=09999 HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public static String page(String... names) {
+      StringBuilder page = new StringBuilder("[");
+      for (String name : names) {
+         if (page.length() > 1) {
+            page.append(',');
+         }
+         page.append("{\"name\":\"").append(name).append("\",") //
+               .append("\"hash\":\"4281c348eaf83e70ddce0e07221c3d28\",") //
+               .append("\"bytes\":14,") //
+               .append("\"content_type\":\"application/octet-stream\",") //
+               .append("\"last_modified\":\"2009-02-03T05:26:32.612278\"}");
+      }
+      return page.append(']').toString();
+   }
+}
@@ -99,6 +99,89 @@ public class ContainerApiMockTest extends BaseOpenStackMockTest<SwiftApi> {
       }
    }
 
+   public void listFollowsMarkers() throws Exception {
+      StringBuilder fullPage = new StringBuilder("[");
+      for (int i = 0; i < 10000; i++) {
+         fullPage.append(i == 0 ? "" : ",").append(String.format("{\"name\":\"c%05d\", \"count\":0, \"bytes\":0}", i));
+      }
+      fullPage.append("]");
+
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(fullPage.toString())));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(containerList)));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ImmutableList<Container> containers = api.containerApiInRegion("DFW").list().concat().toList();
+         assertEquals(containers.size(), 10002);
+         assertEquals(containers.get(10001).name(), "test_container_2");
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&marker=c09999 HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&marker=test_container_2"
+                     + " HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void listWithPrefixKeepsPagingPastShortPages() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      // a cluster whose account_listing_limit is 1
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"name\":\"a\", \"count\":0, \"bytes\":0}]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"name\":\"b\", \"count\":0, \"bytes\":0}]")));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ImmutableList<Container> containers = api.containerApiInRegion("DFW").listWithPrefix("test").concat()
+               .toList();
+         assertEquals(containers.size(), 2);
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&prefix=test HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&marker=a&prefix=test HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&marker=b&prefix=test HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void listWithPrefix() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(containerList)));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ImmutableList<Container> containers = api.containerApiInRegion("DFW").listWithPrefix("test").concat()
+               .toList();
+         assertEquals(containers.size(), 2);
+
+         assertEquals(server.getRequestCount(), 3);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/?format=json&prefix=test HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(), "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9"
+               + "/?format=json&marker=test_container_2&prefix=test HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
    public void createIfAbsent() throws Exception {
       MockWebServer server = mockOpenStackServer();
       server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
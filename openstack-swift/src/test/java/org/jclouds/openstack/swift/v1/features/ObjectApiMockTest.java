@@ -24,6 +24,7 @@ import static org.jclouds.openstack.swift.v1.features.ContainerApiMockTest.conta
 import static org.jclouds.openstack.swift.v1.options.ListContainerOptions.Builder.marker;
 import static org.jclouds.openstack.swift.v1.reference.SwiftHeaders.OBJECT_COPY_FROM;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
@@ -116,6 +117,29 @@ public class ObjectApiMockTest extends BaseOpenStackMockTest<SwiftApi> {
       }
    }
 
+   public void listSkipsSubdirsAndReadsNullsAndEscapes() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(containerResponse().setBody("[" //
+            + "{\"subdir\":\"logs/\"}," //
+            + "{\"name\":\"caf\\u00e9\\/\\\"quoted\\\"\",\"hash\":\"4281c348eaf83e70ddce0e07221c3d28\"," //
+            + "\"bytes\":null,\"content_type\":null,\"last_modified\":\"2009-02-03T05:26:32.612278\"}]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ObjectList objects = api.objectApiInRegionForContainer("DFW", "myContainer").list(new ListContainerOptions());
+
+         assertEquals(objects.size(), 1);
+         SwiftObject object = objects.get(0);
+         assertEquals(object.name(), "caf\u00e9/\"quoted\"");
+         assertEquals(object.etag(), "4281c348eaf83e70ddce0e07221c3d28");
+         assertEquals(object.payload().getContentMetadata().getContentLength(), Long.valueOf(0));
+         assertNull(object.payload().getContentMetadata().getContentType());
+      } finally {
+         server.shutdown();
+      }
+   }
+
    public void listOptions() throws Exception {
       MockWebServer server = mockOpenStackServer();
       server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
@@ -331,6 +355,26 @@ public class ObjectApiMockTest extends BaseOpenStackMockTest<SwiftApi> {
       }
    }
    
+   public void copyManifest() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(201)));
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         assertTrue(api.objectApiInRegionForContainer("DFW", "foo").copyManifest("bar.txt", "bar", "foo.txt"));
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+
+         RecordedRequest copyRequest = server.takeRequest();
+         assertEquals(copyRequest.getRequestLine(),
+               "PUT /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/foo/bar.txt?multipart-manifest=get HTTP/1.1");
+         assertEquals(copyRequest.getHeader(SwiftHeaders.OBJECT_COPY_FROM), "/bar/foo.txt");
+      } finally {
+         server.shutdown();
+      }
+   }
+
    @Test(expectedExceptions = CopyObjectException.class)
    public void copyObjectFail() throws InterruptedException, IOException {
       MockWebServer server = mockOpenStackServer();
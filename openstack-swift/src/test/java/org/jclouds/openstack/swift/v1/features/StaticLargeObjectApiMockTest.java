@@ -17,6 +17,7 @@
 package org.jclouds.openstack.swift.v1.features;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 import org.jclouds.openstack.swift.v1.SwiftApi;
 import org.jclouds.openstack.swift.v1.domain.Segment;
@@ -69,6 +70,46 @@ public class StaticLargeObjectApiMockTest extends BaseOpenStackMockTest<SwiftApi
       }
    }
 
+   public void getManifest() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setBody("[{\"hash\": \"0228c7926b8b642dfb29554cd1f00963\", "
+            + "\"last_modified\": \"2014-07-02T15:34:18.000000\", \"bytes\": 1468006, "
+            + "\"name\": \"/mycontainer/objseg1\", \"content_type\": \"application/octet-stream\"}, "
+            + "{\"hash\": \"b9c3da507d2557c1ddc51f27c54bae51\", \"bytes\": 256, "
+            + "\"name\": \"/other-container/seg-final\"}]")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         assertEquals(api.staticLargeObjectApiInRegionForContainer("DFW", "myContainer").getManifest("myObject"),
+               ImmutableList.of(
+                     Segment.builder().path("/mycontainer/objseg1").etag("0228c7926b8b642dfb29554cd1f00963")
+                           .sizeBytes(1468006).build(),
+                     Segment.builder().path("/other-container/seg-final").etag("b9c3da507d2557c1ddc51f27c54bae51")
+                           .sizeBytes(256).build()));
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "GET /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject?multipart-manifest=get HTTP/1.1");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void getManifestWhenAbsent() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse().setResponseCode(404)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         assertNull(api.staticLargeObjectApiInRegionForContainer("DFW", "myContainer").getManifest("myObject"));
+      } finally {
+         server.shutdown();
+      }
+   }
+
    public void delete() throws Exception {
       MockWebServer server = mockOpenStackServer();
       server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
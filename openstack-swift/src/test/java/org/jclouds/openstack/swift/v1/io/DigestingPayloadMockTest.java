@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static org.jclouds.io.Payloads.newInputStreamPayload;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+@Test
+public class DigestingPayloadMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void matchingETagPasses() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse() //
+            .setResponseCode(201) //
+            .addHeader("ETag", "3882ac81591a36855a9d6ceab7783d21")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         DigestingPayload payload = new DigestingPayload(newInputStreamPayload(new ByteArrayInputStream("swifty"
+               .getBytes())));
+         String etag = api.objectApiInRegionForContainer("DFW", "myContainer").replace("myObject", payload,
+               ImmutableMap.<String, String> of());
+
+         assertEquals(payload.checkETag("myObject", etag), "3882ac81591a36855a9d6ceab7783d21");
+
+         assertEquals(server.getRequestCount(), 2);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         RecordedRequest replace = server.takeRequest();
+         assertEquals(new String(replace.getBody()), "swifty");
+         // the md5 is only known after the body was sent
+         assertNull(replace.getHeader("ETag"));
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void mismatchedETagFails() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(new MockResponse() //
+            .setResponseCode(201) //
+            .addHeader("ETag", "d9f5eb4bba4e2f2f046e54611bc8196b")));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         DigestingPayload payload = new DigestingPayload(newInputStreamPayload(new ByteArrayInputStream("swifty"
+               .getBytes())));
+         String etag = api.objectApiInRegionForContainer("DFW", "myContainer").replace("myObject", payload,
+               ImmutableMap.<String, String> of());
+
+         try {
+            payload.checkETag("myObject", etag);
+            fail("expected the md5 of swifty not to match");
+         } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "myObject was corrupted in transit: sent md5 "
+                  + "3882ac81591a36855a9d6ceab7783d21, but swift stored d9f5eb4bba4e2f2f046e54611bc8196b");
+         }
+      } finally {
+         server.shutdown();
+      }
+   }
+}
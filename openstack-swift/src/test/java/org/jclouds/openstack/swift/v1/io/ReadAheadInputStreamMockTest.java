@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.jclouds.openstack.swift.v1.io.SwiftObjectChannelMockTest.objectResponse;
+import static org.jclouds.openstack.swift.v1.io.SwiftObjectChannelMockTest.rangeResponse;
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.jclouds.util.Strings2;
+import org.testng.annotations.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test
+public class ReadAheadInputStreamMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void readsChunksInOrder() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(rangeResponse("0123", 0, 10)));
+      server.enqueue(addCommonHeaders(rangeResponse("4567", 4, 10)));
+      server.enqueue(addCommonHeaders(rangeResponse("89", 8, 10)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ReadAheadInputStream in = new ReadAheadInputStream(api.objectApiInRegionForContainer("DFW", "myContainer"),
+               "myObject", "781e5e245d69b566979b86e28d23f2c7", 10, listeningDecorator(sameThreadExecutor()), 4, 2);
+
+         assertEquals(Strings2.toStringAndClose(in), "0123456789");
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=0-3");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=4-7");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=8-9");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "myObject changed while being read.*")
+   public void failsWhenObjectChanges() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(rangeResponse("0123", 0, 4)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ReadAheadInputStream in = new ReadAheadInputStream(api.objectApiInRegionForContainer("DFW", "myContainer"),
+               "myObject", "other", 4, listeningDecorator(sameThreadExecutor()), 4, 2);
+         in.read();
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "expected bytes 4-7 of myObject.*")
+   public void failsWhenChunkIsNotTheRange() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(rangeResponse("0123", 0, 8)));
+      // the range was ignored, and the whole object returned
+      server.enqueue(addCommonHeaders(objectResponse("01234567", 200)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         ReadAheadInputStream in = new ReadAheadInputStream(api.objectApiInRegionForContainer("DFW", "myContainer"),
+               "myObject", "781e5e245d69b566979b86e28d23f2c7", 8, listeningDecorator(sameThreadExecutor()), 4, 2);
+         Strings2.toStringAndClose(in);
+      } finally {
+         server.shutdown();
+      }
+   }
+}
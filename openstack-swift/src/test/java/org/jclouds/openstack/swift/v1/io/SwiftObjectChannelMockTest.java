@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jclouds.openstack.swift.v1.io;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jclouds.openstack.swift.v1.SwiftApi;
+import org.jclouds.openstack.v2_0.internal.BaseOpenStackMockTest;
+import org.testng.annotations.Test;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+@Test
+public class SwiftObjectChannelMockTest extends BaseOpenStackMockTest<SwiftApi> {
+
+   public void coalescesAndCachesBlocks() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse("0123456789", 200)));
+      server.enqueue(addCommonHeaders(rangeResponse("89", 8, 10)));
+      server.enqueue(addCommonHeaders(rangeResponse("01234567", 0, 10)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         SwiftObjectChannel channel = SwiftObjectChannel.open(api.objectApiInRegionForContainer("DFW", "myContainer"),
+               "myContainer", "myObject", 4, 3, true);
+         assertEquals(channel.size(), 10);
+
+         // footer first, then the beginning
+         assertEquals(read(channel.position(8), 2), "89");
+         assertEquals(read(channel.position(0), 8), "01234567");
+         assertEquals(read(channel.position(2), 4), "2345");
+         assertEquals(channel.requestCount(), 2);
+         assertEquals(channel.read(ByteBuffer.allocate(1)), -1);
+
+         assertEquals(server.getRequestCount(), 4);
+         assertEquals(server.takeRequest().getRequestLine(), "POST /tokens HTTP/1.1");
+         assertEquals(server.takeRequest().getRequestLine(),
+               "HEAD /v1/MossoCloudFS_5bcf396e-39dd-45ff-93a1-712b9aba90a9/myContainer/myObject HTTP/1.1");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=8-9");
+         assertEquals(server.takeRequest().getHeader("Range"), "bytes=0-7");
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   public void rejectsResponsesWhichAreNotTheRange() throws Exception {
+      MockWebServer server = mockOpenStackServer();
+      server.enqueue(addCommonHeaders(new MockResponse().setBody(stringFromResource("/access.json"))));
+      server.enqueue(addCommonHeaders(objectResponse("0123456789", 200)));
+      // the range was ignored, and the whole object returned
+      server.enqueue(addCommonHeaders(objectResponse("0123456789", 200)));
+      server.enqueue(addCommonHeaders(rangeResponse("89", 8, 10)));
+
+      try {
+         SwiftApi api = api(server.getUrl("/").toString(), "openstack-swift");
+         SwiftObjectChannel channel = SwiftObjectChannel.open(api.objectApiInRegionForContainer("DFW", "myContainer"),
+               "myContainer", "myObject", 4, 3, false);
+         try {
+            read(channel.position(8), 2);
+            fail("expected the whole object to be rejected");
+         } catch (IOException e) {
+            assertEquals(e.getMessage(), "expected bytes 8-9 of myObject, but got Content-Range null");
+         }
+         // nothing was cached from the rejected response
+         assertEquals(read(channel.position(8), 2), "89");
+         assertEquals(channel.requestCount(), 2);
+      } finally {
+         server.shutdown();
+      }
+   }
+
+   private static String read(SwiftObjectChannel channel, int length) throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+      }
+      return new String(buffer.array(), 0, buffer.position(), US_ASCII);
+   }
+
+   static MockResponse rangeResponse(String body, long first, long size) {
+      return objectResponse(body, 206).addHeader("Content-Range",
+            String.format("bytes %s-%s/%s", first, first + body.length() - 1, size));
+   }
+
+   static MockResponse objectResponse(String body, int code) {
+      return new MockResponse().setResponseCode(code) //
+            .addHeader("Last-Modified", "Fri, 12 Jun 2010 13:40:18 GMT") //
+            .addHeader("ETag", "781e5e245d69b566979b86e28d23f2c7") //
+            .setBody(body.getBytes(US_ASCII)) //
+            .addHeader("Content-Type", "application/octet-stream");
+   }
+}